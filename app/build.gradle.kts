@@ -61,6 +61,11 @@ dependencies {
     implementation("com.itextpdf:itext7-core:7.2.5")
 
     testImplementation(libs.junit)
+    // android.jar only has stubs of org.json; BillCodec's JSON is tested on the JVM
+    testImplementation(libs.org.json)
+    // Benchmarks under src/test, see MoneyBenchmark
+    testImplementation(libs.jmh.core)
+    testAnnotationProcessor(libs.jmh.generator.annprocess)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
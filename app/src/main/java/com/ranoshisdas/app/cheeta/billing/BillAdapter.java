@@ -6,28 +6,46 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.ranoshisdas.app.cheeta.R;
-import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+import com.ranoshisdas.app.cheeta.utils.StableIds;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
-public class BillAdapter extends RecyclerView.Adapter<BillAdapter.ViewHolder> {
+public class BillAdapter extends ListAdapter<BillRow, BillAdapter.ViewHolder> {
 
-    private List<Bill> bills;
+    private static final DiffUtil.ItemCallback<BillRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<BillRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull BillRow oldRow, @NonNull BillRow newRow) {
+            return Objects.equals(oldRow.getBillId(), newRow.getBillId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull BillRow oldRow, @NonNull BillRow newRow) {
+            return oldRow == newRow || oldRow.hasSameText(newRow);
+        }
+    };
+
+    private final StableIds<String> stableIds = StableIds.byKey();
     private OnBillClickListener clickListener;
 
     public interface OnBillClickListener {
-        void onBillClick(Bill bill);
+        void onBillClick(BillSummary bill);
     }
 
-    public BillAdapter(List<Bill> bills, OnBillClickListener clickListener) {
-        this.bills = bills;
+    public BillAdapter(OnBillClickListener clickListener) {
+        super(DIFF_CALLBACK);
         this.clickListener = clickListener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(getItem(position).getBillId());
     }
 
     @NonNull
@@ -35,44 +53,28 @@ public class BillAdapter extends RecyclerView.Adapter<BillAdapter.ViewHolder> {
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_bill, parent, false);
-        return new ViewHolder(view);
-    }
+        ViewHolder holder = new ViewHolder(view);
 
-    @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Bill bill = bills.get(position);
-
-        // Display bill number prominently
-        if (bill.billNumber != null && !bill.billNumber.isEmpty()) {
-            holder.billNumberText.setText("Bill #" + bill.billNumber);
-            holder.billNumberText.setVisibility(View.VISIBLE);
-        } else {
-            // Fallback for legacy bills without bill number
-            holder.billNumberText.setText("Bill #" + bill.billId.substring(0, 8));
-            holder.billNumberText.setVisibility(View.VISIBLE);
-        }
-
-        holder.customerText.setText("Customer: " + bill.customer.name);
-        holder.phoneText.setText("Phone: " + bill.customer.phone);
-        holder.totalText.setText("Total: ₹" + String.format("%.2f", bill.total));
-        holder.dateText.setText(formatDate(bill.timestamp));
-        holder.itemCountText.setText("Items: " + bill.items.size());
-
-        holder.itemView.setOnClickListener(v -> {
-            if (clickListener != null) {
-                clickListener.onBillClick(bill);
+        // One listener per holder instead of one per bind
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (clickListener != null && position != RecyclerView.NO_POSITION) {
+                clickListener.onBillClick(getItem(position).bill);
             }
         });
-    }
-
-    private String formatDate(long timestamp) {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd MMM yyyy, hh:mm a", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return holder;
     }
 
     @Override
-    public int getItemCount() {
-        return bills.size();
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        // Labels are preformatted in BillRow, so binding allocates nothing
+        BillRow row = getItem(position);
+        holder.billNumberText.setText(row.billNumberText);
+        holder.customerText.setText(row.customerText);
+        holder.phoneText.setText(row.phoneText);
+        holder.totalText.setText(row.totalText);
+        holder.dateText.setText(row.dateText);
+        holder.itemCountText.setText(row.itemCountText);
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -88,4 +90,4 @@ public class BillAdapter extends RecyclerView.Adapter<BillAdapter.ViewHolder> {
             itemCountText = itemView.findViewById(R.id.itemCountText);
         }
     }
-}
\ No newline at end of file
+}
@@ -17,8 +17,10 @@ import com.ranoshisdas.app.cheeta.R;
 import com.ranoshisdas.app.cheeta.models.Bill;
 import com.ranoshisdas.app.cheeta.settings.InvoiceSettingsActivity;
 import com.ranoshisdas.app.cheeta.utils.BillCompatibilityHelper;
+import com.ranoshisdas.app.cheeta.utils.BillRepository;
 import com.ranoshisdas.app.cheeta.utils.ImageUtils;
 import com.ranoshisdas.app.cheeta.utils.InvoiceSettings;
+import com.ranoshisdas.app.cheeta.utils.Money;
 import com.ranoshisdas.app.cheeta.utils.PdfUtils;
 import com.ranoshisdas.app.cheeta.utils.ShareUtils;
 
@@ -29,6 +31,8 @@ import java.util.Locale;
 
 public class BillDetailActivity extends AppCompatActivity {
 
+    public static final String EXTRA_BILL_ID = "billId";
+
     private TextView customerNameText, customerPhoneText, customerEmailText;
     private TextView billIdText, billDateText, totalText;
     private RecyclerView itemsRecycler;
@@ -43,14 +47,36 @@ public class BillDetailActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_bill_detail);
 
-        bill = (Bill) getIntent().getSerializableExtra("bill");
-        if (bill == null) {
+        String billId = getIntent().getStringExtra(EXTRA_BILL_ID);
+        if (billId == null) {
             Toast.makeText(this, "Error loading bill", Toast.LENGTH_SHORT).show();
             finish();
             return;
         }
 
         initializeViews();
+        progressBar.setVisibility(View.VISIBLE);
+
+        // Usually a cache hit; after process death this reads the single bill document
+        BillRepository.getInstance().load(billId, new BillRepository.OnBillLoadedListener() {
+            @Override
+            public void onBillLoaded(Bill loaded) {
+                if (isDestroyed()) return;
+                progressBar.setVisibility(View.GONE);
+                showBill(loaded);
+            }
+
+            @Override
+            public void onBillLoadFailed(Exception e) {
+                if (isDestroyed()) return;
+                Toast.makeText(BillDetailActivity.this, "Error loading bill", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        });
+    }
+
+    private void showBill(Bill loaded) {
+        bill = loaded;
         displayBillDetails();
         setupRecyclerView();
         setupListeners();
@@ -91,7 +117,7 @@ public class BillDetailActivity extends AppCompatActivity {
         SimpleDateFormat sdf = new SimpleDateFormat("dd MMM yyyy, hh:mm a", Locale.getDefault());
         billDateText.setText("Date: " + sdf.format(new Date(bill.timestamp)));
 
-        totalText.setText("Total: ₹" + String.format("%.2f", bill.total));
+        totalText.setText("Total: ₹" + Money.formatRupees(bill.total));
     }
 
     private void setupRecyclerView() {
@@ -129,7 +155,7 @@ public class BillDetailActivity extends AppCompatActivity {
                 runOnUiThread(() -> {
                     progressBar.setVisibility(View.GONE);
                     shareImageButton.setEnabled(true);
-                    ShareUtils.shareFile(this, imageFile, "image/png");
+                    ShareUtils.shareFile(this, imageFile, ImageUtils.getMimeType(imageFile));
                 });
             } catch (Exception e) {
                 runOnUiThread(() -> {
@@ -0,0 +1,119 @@
+package com.ranoshisdas.app.cheeta.billing;
+
+import com.ranoshisdas.app.cheeta.models.BillItem;
+import com.ranoshisdas.app.cheeta.models.Item;
+import com.ranoshisdas.app.cheeta.utils.BillTotals;
+import com.ranoshisdas.app.cheeta.utils.Money;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bill being built on Create Bill.
+ *
+ * There is one line per inventory item: adding an item that is already on the bill adds to
+ * that line's quantity. The subtotal is adjusted by each change's difference, so totals
+ * cost O(1) per change however long the bill is. Tax rates are read once when the draft is
+ * created and used for every total, including the saved bill.
+ *
+ * Lines are mutated in place; the returned line lets callers refresh just that row.
+ */
+public class BillDraft {
+
+    private final List<BillItem> lines = new ArrayList<>();           // In the order added
+    private final Map<String, BillItem> linesByItemId = new HashMap<>();
+
+    private final float cgstRate;
+    private final float sgstRate;
+    private final int cgstBasisPoints;
+    private final int sgstBasisPoints;
+
+    private long subtotal = 0;
+    private final BillTotals totals = new BillTotals();
+
+    public BillDraft(float cgstRate, float sgstRate) {
+        this.cgstRate = cgstRate;
+        this.sgstRate = sgstRate;
+        this.cgstBasisPoints = Money.basisPoints(cgstRate);
+        this.sgstBasisPoints = Money.basisPoints(sgstRate);
+        totals.compute(0, cgstBasisPoints, sgstBasisPoints);
+    }
+
+    /**
+     * Add {@code quantity} of an item, merging into its existing line if there is one.
+     *
+     * @return The new or updated line
+     */
+    public BillItem add(Item item, int quantity) {
+        BillItem line = linesByItemId.get(item.id);
+        if (line != null) {
+            setQuantity(line, line.quantity + quantity);
+            return line;
+        }
+
+        line = new BillItem(item, quantity);
+        lines.add(line);
+        linesByItemId.put(line.id, line);
+        changeSubtotal(line.subtotalPaise());
+        return line;
+    }
+
+    /**
+     * Change a line's quantity, keeping its price.
+     */
+    public void setQuantity(BillItem line, int quantity) {
+        long before = line.subtotalPaise();
+        line.quantity = quantity;
+        line.updateSubtotal();
+        changeSubtotal(line.subtotalPaise() - before);
+    }
+
+    public void remove(BillItem line) {
+        if (linesByItemId.remove(line.id) != null) {
+            lines.remove(line);
+            changeSubtotal(-line.subtotalPaise());
+        }
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    /**
+     * @return The lines in the order added; a live view, copy before handing to a diff
+     */
+    public List<BillItem> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * @return Current totals in paise; updated in place on every change
+     */
+    public BillTotals getTotals() {
+        return totals;
+    }
+
+    public float getCgstRate() {
+        return cgstRate;
+    }
+
+    public float getSgstRate() {
+        return sgstRate;
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private void changeSubtotal(long delta) {
+        subtotal += delta;
+        totals.compute(subtotal, cgstBasisPoints, sgstBasisPoints);
+    }
+}
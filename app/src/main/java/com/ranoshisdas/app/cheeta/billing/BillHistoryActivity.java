@@ -3,9 +3,9 @@ package com.ranoshisdas.app.cheeta.billing;
 import android.app.DatePickerDialog;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
 import android.text.Editable;
 import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.ImageButton;
@@ -13,42 +13,110 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Lifecycle;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
 import com.ranoshisdas.app.cheeta.R;
 import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+import com.ranoshisdas.app.cheeta.utils.BillCodec;
+import com.ranoshisdas.app.cheeta.utils.BillExporter;
+import com.ranoshisdas.app.cheeta.utils.BillRepository;
+import com.ranoshisdas.app.cheeta.utils.BillSearchIndex;
+import com.ranoshisdas.app.cheeta.utils.BillStore;
+import com.ranoshisdas.app.cheeta.utils.BillSync;
+import com.ranoshisdas.app.cheeta.utils.Debouncer;
 import com.ranoshisdas.app.cheeta.utils.FirebaseUtil;
+import com.ranoshisdas.app.cheeta.utils.ShareUtils;
 
-import java.io.Serializable;
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BillHistoryActivity extends AppCompatActivity {
 
+    private static final String TAG = "BillHistoryActivity";
+
+    // Bills fetched per page, from Firestore or the local store
+    private static final int PAGE_SIZE = 50;
+    // Start fetching the next page when this many rows are left below the last visible one
+    private static final int LOAD_MORE_THRESHOLD = 10;
+    // Pages a search may fetch on its own before asking, so a search with few or no
+    // matches does not download the whole history
+    private static final int MAX_SEARCH_PAGES = 4;
+
     private EditText searchInput;
-    private ImageButton filterButton, clearFilterButton;
-    private TextView dateRangeText;
+    private ImageButton filterButton, clearFilterButton, exportButton;
+    private TextView dateRangeText, searchMoreText;
     private RecyclerView recyclerView;
+    private LinearLayoutManager layoutManager;
     private BillAdapter adapter;
     private ProgressBar progressBar;
 
-    private List<Bill> allBills = new ArrayList<>();
-    private List<Bill> filteredBills = new ArrayList<>();
+    private List<BillSummary> allBills = new ArrayList<>();
+
+    // Searching runs on filterExecutor, the only thread that touches the index.
+    // Each applyFilters() bumps the generation, which stops older searches midway
+    private final BillSearchIndex searchIndex = new BillSearchIndex();
+    private final ExecutorService filterExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger filterGeneration = new AtomicInteger();
+
+    // Preformatted rows per bill ID. Rows are formatted on the sync executor as bills load
+    private final Map<String, BillRow> rows = new HashMap<>();
+    private final BillRow.Formatter rowFormatter = new BillRow.Formatter();
+
+    // Once the local store mirrors the full history, pages and searches are served from it
+    private BillStore billStore;
+    private boolean useLocalStore = false;
+    // Until legacy bills have summaries in bill_index, remote pages are read from bills
+    private boolean indexMigrated = false;
+    private boolean syncStateLoaded = false;
+    private String userId;
+
+    // Live changes to the newest page while the screen is visible
+    private ListenerRegistration recentBillsListener;
 
     // Filter state
     private long fromDate = 0;
     private long toDate = 0;
     private String searchQuery = "";
 
-    // Debounce handler
-    private Handler searchHandler = new Handler();
-    private Runnable searchRunnable;
+    // Pagination state
+    private DocumentSnapshot lastSnapshot;
+    private boolean isLoading = false;
+    private boolean hasMoreBills = true;
+    // Pages fetched for the current search since the user last scrolled or asked for more
+    private int searchPagesLoaded = 0;
+    // Bumped on every reload so responses for an outdated query are dropped
+    private int queryGeneration = 0;
+
+    // Search input debounce, cancelled with the activity
+    private Debouncer searchDebouncer;
+
+    // Export in progress, if any; cancelled with the activity
+    private BillExporter exporter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -59,26 +127,82 @@ public class BillHistoryActivity extends AppCompatActivity {
         setupRecyclerView();
         setupSearchListener();
         setupFilterListeners();
-        loadBills();
+
+        userId = FirebaseUtil.auth().getCurrentUser().getUid();
+        billStore = BillStore.getInstance(this);
+        progressBar.setVisibility(View.VISIBLE);
+
+        BillSync.executor().execute(() -> {
+            BillStore.SyncState state = billStore.getSyncState(userId);
+            boolean synced = state.complete;
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                useLocalStore = synced;
+                indexMigrated = state.indexMigrated;
+                syncStateLoaded = true;
+                loadBills();
+                if (isStarted()) {
+                    startListening();
+                }
+                if (synced) {
+                    BillSync.syncRecent(this, userId, changedBills -> {
+                        if (!isDestroyed()) loadBills();
+                    });
+                } else {
+                    BillSync.backfill(this, userId);
+                }
+            });
+        });
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (syncStateLoaded) {
+            startListening();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        stopListening();
     }
 
     private void initializeViews() {
         searchInput = findViewById(R.id.searchInput);
         filterButton = findViewById(R.id.filterButton);
         clearFilterButton = findViewById(R.id.clearFilterButton);
+        exportButton = findViewById(R.id.exportButton);
         dateRangeText = findViewById(R.id.dateRangeText);
         recyclerView = findViewById(R.id.recyclerView);
         progressBar = findViewById(R.id.progressBar);
+        searchMoreText = findViewById(R.id.searchMoreText);
+        searchMoreText.setOnClickListener(v -> {
+            searchPagesLoaded = 0;
+            loadNextPage();
+        });
     }
 
     private void setupRecyclerView() {
-        filteredBills = new ArrayList<>();
-        adapter = new BillAdapter(filteredBills, this::openBillDetail);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new BillAdapter(this::openBillDetail);
+        layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
+
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy > 0) {
+                    loadMoreIfNearEnd(true);
+                }
+            }
+        });
     }
 
     private void setupSearchListener() {
+        searchDebouncer = new Debouncer(this, 300);
+
         searchInput.addTextChangedListener(new TextWatcher() {
             @Override
             public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
@@ -87,14 +211,8 @@ public class BillHistoryActivity extends AppCompatActivity {
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 searchQuery = s.toString();
 
-                // Cancel previous search
-                if (searchRunnable != null) {
-                    searchHandler.removeCallbacks(searchRunnable);
-                }
-
-                // Debounce search by 300ms
-                searchRunnable = () -> applyFilters();
-                searchHandler.postDelayed(searchRunnable, 300);
+                // Debounce search by 300ms; a newer keystroke replaces the pending search
+                searchDebouncer.submit(() -> onSearchChanged());
             }
 
             @Override
@@ -104,6 +222,7 @@ public class BillHistoryActivity extends AppCompatActivity {
 
     private void setupFilterListeners() {
         filterButton.setOnClickListener(v -> showDateRangePicker());
+        exportButton.setOnClickListener(v -> showExportDialog());
 
         clearFilterButton.setOnClickListener(v -> {
             fromDate = 0;
@@ -112,7 +231,7 @@ public class BillHistoryActivity extends AppCompatActivity {
             searchInput.setText("");
             dateRangeText.setText("All Bills");
             clearFilterButton.setVisibility(View.GONE);
-            applyFilters();
+            loadBills();
         });
     }
 
@@ -152,7 +271,7 @@ public class BillHistoryActivity extends AppCompatActivity {
                     // Update UI
                     updateDateRangeText();
                     clearFilterButton.setVisibility(View.VISIBLE);
-                    applyFilters();
+                    loadBills();
                 },
                 calendar.get(Calendar.YEAR),
                 calendar.get(Calendar.MONTH),
@@ -170,86 +289,528 @@ public class BillHistoryActivity extends AppCompatActivity {
         dateRangeText.setText(fromStr + " - " + toStr);
     }
 
-    private void openBillDetail(Bill bill) {
+    /**
+     * Offer to export every bill in the current date range; the search text does not apply.
+     */
+    private void showExportDialog() {
+        if (exporter != null) {
+            return;
+        }
+        String[] formats = {"One PDF", "ZIP of PDFs"};
+        new AlertDialog.Builder(this)
+                .setTitle("Export " + dateRangeText.getText())
+                .setItems(formats, (dialog, which) -> startExport(which == 0
+                        ? BillExporter.FORMAT_MERGED_PDF
+                        : BillExporter.FORMAT_ZIP))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void startExport(int format) {
+        ProgressBar exportProgress = new ProgressBar(this, null,
+                android.R.attr.progressBarStyleHorizontal);
+        exportProgress.setIndeterminate(true);
+        int padding = (int) (24 * getResources().getDisplayMetrics().density);
+        exportProgress.setPadding(padding, 0, padding, 0);
+
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Exporting Bills")
+                .setMessage("Counting bills...")
+                .setView(exportProgress)
+                .setCancelable(false)
+                .setNegativeButton("Cancel", (dialog, which) -> cancelExport())
+                .show();
+
+        exporter = BillExporter.forDateRange(this, fromDate, toDate, format);
+        exporter.start(new BillExporter.Listener() {
+            @Override
+            public void onExportProgress(int done, int total) {
+                if (total == BillExporter.UNKNOWN_TOTAL) {
+                    // Could not be counted offline; the bar stays indeterminate
+                    progressDialog.setMessage("Exported " + done + " bills");
+                    return;
+                }
+                exportProgress.setIndeterminate(false);
+                exportProgress.setMax(Math.max(total, 1));
+                exportProgress.setProgress(done);
+                progressDialog.setMessage("Exported " + done + " of " + total + " bills");
+            }
+
+            @Override
+            public void onExportComplete(List<File> files, int skipped) {
+                exporter = null;
+                progressDialog.dismiss();
+                if (files.isEmpty()) {
+                    Toast.makeText(BillHistoryActivity.this, "No bills to export",
+                            Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                if (skipped > 0) {
+                    Toast.makeText(BillHistoryActivity.this, skipped
+                                    + " bills skipped; check your invoice settings",
+                            Toast.LENGTH_LONG).show();
+                }
+                ShareUtils.shareFiles(BillHistoryActivity.this, files,
+                        format == BillExporter.FORMAT_ZIP ? "application/zip" : "application/pdf");
+            }
+
+            @Override
+            public void onExportFailed(Exception e) {
+                exporter = null;
+                progressDialog.dismiss();
+                Toast.makeText(BillHistoryActivity.this, "Export failed: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void cancelExport() {
+        if (exporter != null) {
+            exporter.cancel();
+            exporter = null;
+        }
+    }
+
+    /**
+     * Only the ID is passed; the detail screen loads the full bill through BillRepository.
+     */
+    private void openBillDetail(BillSummary summary) {
         Intent intent = new Intent(this, BillDetailActivity.class);
-        intent.putExtra("bill", (Serializable) bill);
+        intent.putExtra(BillDetailActivity.EXTRA_BILL_ID, summary.billId);
         startActivity(intent);
     }
 
+    private void onSearchChanged() {
+        searchPagesLoaded = 0;
+        searchMoreText.setVisibility(View.GONE);
+        if (useLocalStore) {
+            // Search runs in the local store's query, so restart paging with it
+            loadBills();
+        } else {
+            applyFilters();
+        }
+    }
+
+    /**
+     * (Re)start paging from the newest bill in the selected date range.
+     */
     private void loadBills() {
-        progressBar.setVisibility(View.VISIBLE);
-        String userId = FirebaseUtil.auth().getCurrentUser().getUid();
+        queryGeneration++;
+        allBills.clear();
+        onFilterThread(searchIndex::clear);
+        rows.clear();
+        lastSnapshot = null;
+        isLoading = false;
+        hasMoreBills = true;
+        searchPagesLoaded = 0;
+        searchMoreText.setVisibility(View.GONE);
+        applyFilters();
+        loadNextPage();
+    }
+
+    /**
+     * Fetch the next page of bills after the last loaded document.
+     * Only the first page shows the progress bar; later pages load silently while scrolling.
+     */
+    private void loadNextPage() {
+        if (isLoading || !hasMoreBills) {
+            return;
+        }
+        isLoading = true;
+        searchMoreText.setVisibility(View.GONE);
+        int generation = queryGeneration;
+
+        boolean firstPage = allBills.isEmpty();
+        if (firstPage) {
+            progressBar.setVisibility(View.VISIBLE);
+        }
+
+        if (useLocalStore) {
+            loadNextLocalPage(generation);
+            return;
+        }
 
-        FirebaseUtil.db().collection("users")
+        Query query = FirebaseUtil.db().collection("users")
                 .document(userId)
-                .collection("bills")
-                .orderBy("timestamp", com.google.firebase.firestore.Query.Direction.DESCENDING)
+                .collection(indexMigrated ? "bill_index" : "bills")
+                .orderBy("timestamp", Query.Direction.DESCENDING);
+
+        // Date range is narrowed on the server so only matching bills are read
+        if (fromDate > 0) {
+            query = query.whereGreaterThanOrEqualTo("timestamp", fromDate);
+        }
+        if (toDate > 0) {
+            query = query.whereLessThanOrEqualTo("timestamp", toDate);
+        }
+
+        if (lastSnapshot != null) {
+            query = query.startAfter(lastSnapshot);
+        }
+
+        boolean fromIndex = indexMigrated;
+        query.limit(PAGE_SIZE)
                 .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    allBills.clear();
+                // Deserialize and format on the executor, then hand finished rows to the UI
+                .addOnSuccessListener(BillSync.executor(), queryDocumentSnapshots -> {
+                    List<BillRow> page = new ArrayList<>();
+                    DocumentSnapshot last = null;
                     for (QueryDocumentSnapshot doc : queryDocumentSnapshots) {
-                        Bill bill = doc.toObject(Bill.class);
-                        bill.billId = doc.getId();
-                        allBills.add(bill);
+                        BillSummary bill = toSummary(doc, fromIndex);
+                        if (bill != null) {
+                            page.add(rowFormatter.format(bill));
+                        }
+                        last = doc;
                     }
-                    applyFilters();
-                    progressBar.setVisibility(View.GONE);
+                    DocumentSnapshot pageEnd = last;
+                    // Counts unreadable bills too, so one does not end paging early
+                    boolean fullPage = queryDocumentSnapshots.size() == PAGE_SIZE;
+
+                    runOnUiThread(() -> {
+                        if (generation != queryGeneration || isDestroyed()) {
+                            return;
+                        }
+                        List<BillSummary> bills = new ArrayList<>(page.size());
+                        for (BillRow row : page) {
+                            rows.put(row.getBillId(), row);
+                            bills.add(row.bill);
+                        }
+                        allBills.addAll(bills);
+                        onFilterThread(() -> searchIndex.addAll(bills));
+                        if (pageEnd != null) {
+                            lastSnapshot = pageEnd;
+                        }
+                        hasMoreBills = fullPage;
+                        isLoading = false;
+                        progressBar.setVisibility(View.GONE);
+                        applyFilters();
+                    });
                 })
                 .addOnFailureListener(e -> {
+                    if (generation != queryGeneration) {
+                        return;
+                    }
+                    isLoading = false;
                     Toast.makeText(this, "Failed to load bills", Toast.LENGTH_SHORT).show();
                     progressBar.setVisibility(View.GONE);
                 });
     }
 
     /**
-     * Apply all filters locally without querying Firestore
+     * Read the next page from the local store, applying search and date range in SQL.
+     */
+    private void loadNextLocalPage(int generation) {
+        String query = searchQuery;
+        long from = fromDate;
+        long to = toDate;
+        BillSummary after = allBills.isEmpty() ? null : allBills.get(allBills.size() - 1);
+
+        BillSync.executor().execute(() -> {
+            List<BillSummary> page = billStore.loadPage(userId, query, from, to, after, PAGE_SIZE);
+            List<BillRow> pageRows = formatRows(page);
+            runOnUiThread(() -> {
+                if (generation != queryGeneration || isDestroyed()) {
+                    return;
+                }
+                for (BillRow row : pageRows) {
+                    rows.put(row.getBillId(), row);
+                }
+                allBills.addAll(page);
+                hasMoreBills = page.size() == PAGE_SIZE;
+                isLoading = false;
+                progressBar.setVisibility(View.GONE);
+                applyFilters();
+            });
+        });
+    }
+
+    /**
+     * Load the next page once the user scrolls close to the end of the list.
+     * Also covers the case where filters leave too few rows to scroll at all; while
+     * searching, that stops after {@link #MAX_SEARCH_PAGES} pages until the user asks for more.
+     *
+     * @param scrolled True if the user scrolled, rather than the list changing
+     */
+    private void loadMoreIfNearEnd(boolean scrolled) {
+        if (isLoading || !hasMoreBills) {
+            return;
+        }
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible < adapter.getItemCount() - 1 - LOAD_MORE_THRESHOLD) {
+            return;
+        }
+
+        // Pages are filtered after fetching only for remote searches
+        if (!useLocalStore && !searchQuery.trim().isEmpty()) {
+            if (scrolled) {
+                searchPagesLoaded = 0;
+            } else if (searchPagesLoaded >= MAX_SEARCH_PAGES) {
+                showSearchMore();
+                return;
+            }
+            searchPagesLoaded++;
+        }
+        loadNextPage();
+    }
+
+    private void showSearchMore() {
+        searchMoreText.setText(adapter.getItemCount() == 0
+                ? "No matches in the latest " + allBills.size() + " bills. Tap to search older bills"
+                : "Tap to search older bills");
+        searchMoreText.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Apply the text search locally. The date range is already applied by the query.
+     * Searching runs on the filter thread; only the latest result reaches the adapter.
      */
     private void applyFilters() {
-        filteredBills.clear();
+        int generation = filterGeneration.incrementAndGet();
+
+        if (useLocalStore) {
+            // Search was already applied by the local store's query
+            showBills(allBills);
+            return;
+        }
+
+        // Search filter (bill number, customer name, phone) via the prebuilt index
+        String query = searchQuery;
+        onFilterThread(() -> {
+            List<BillSummary> result = new ArrayList<>();
+            boolean finished = searchIndex.search(query, result,
+                    () -> filterGeneration.get() != generation);
+            if (!finished) {
+                return;
+            }
+            runOnUiThread(() -> {
+                if (generation == filterGeneration.get() && !isDestroyed()) {
+                    showBills(result);
+                }
+            });
+        });
+    }
+
+    private void showBills(List<BillSummary> bills) {
+        List<BillRow> list = new ArrayList<>(bills.size());
+        for (BillSummary bill : bills) {
+            list.add(rows.get(bill.billId));
+        }
+
+        // Diffed off the main thread; only changed rows are rebound.
+        // Once committed, wait for layout so the visible range reflects the new data
+        adapter.submitList(list, () -> recyclerView.post(() -> loadMoreIfNearEnd(false)));
+    }
+
+    /**
+     * Run on the thread that owns the search index. Dropped once the activity is destroyed.
+     */
+    private void onFilterThread(Runnable task) {
+        if (!filterExecutor.isShutdown()) {
+            filterExecutor.execute(task);
+        }
+    }
+
+    /**
+     * Must run on the sync executor, which owns {@link #rowFormatter}.
+     */
+    private List<BillRow> formatRows(List<BillSummary> bills) {
+        List<BillRow> formatted = new ArrayList<>(bills.size());
+        for (BillSummary bill : bills) {
+            formatted.add(rowFormatter.format(bill));
+        }
+        return formatted;
+    }
+
+    /* =========================
+       LIVE UPDATES
+       ========================= */
+
+    private boolean isStarted() {
+        return getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED);
+    }
 
-        String query = searchQuery.toLowerCase().trim();
+    /**
+     * Listen to the newest page of bills so bills saved, edited or deleted on other devices
+     * show up without reloading. Only the changed documents are applied.
+     */
+    private void startListening() {
+        if (recentBillsListener != null) {
+            return;
+        }
+        recentBillsListener = FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection(indexMigrated ? "bill_index" : "bills")
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .limit(PAGE_SIZE)
+                .addSnapshotListener(this::onRecentBillsChanged);
+    }
+
+    private void stopListening() {
+        if (recentBillsListener != null) {
+            recentBillsListener.remove();
+            recentBillsListener = null;
+        }
+    }
+
+    private void onRecentBillsChanged(QuerySnapshot snapshots, FirebaseFirestoreException e) {
+        if (e != null || snapshots == null) {
+            Log.w(TAG, "Live bill updates stopped", e);
+            return;
+        }
 
-        for (Bill bill : allBills) {
-            boolean matches = true;
+        // A full window also drops its oldest bill whenever a newer one arrives.
+        // That bill still exists, so only bills newer than the window's end were deleted
+        List<DocumentSnapshot> window = snapshots.getDocuments();
+        BillSummary windowEnd = null;
+        if (window.size() == PAGE_SIZE) {
+            // The oldest readable bill; unreadable ones are not shown anyway
+            for (int i = window.size() - 1; i >= 0 && windowEnd == null; i--) {
+                windowEnd = toSummary(window.get(i), indexMigrated);
+            }
+        }
+
+        List<BillSummary> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (DocumentChange change : snapshots.getDocumentChanges()) {
+            BillSummary bill = toSummary(change.getDocument(), indexMigrated);
+            if (bill == null) {
+                continue;
+            }
+            if (change.getType() != DocumentChange.Type.ADDED) {
+                // Cached full bill may be stale now
+                BillRepository.getInstance().invalidate(bill.billId);
+            }
+            if (change.getType() != DocumentChange.Type.REMOVED) {
+                changed.add(bill);
+            } else if (windowEnd == null || BillSummary.NEWEST_FIRST.compare(bill, windowEnd) < 0) {
+                removed.add(bill.billId);
+            }
+        }
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
 
-            // Search filter (bill number, customer name, phone)
-            if (!query.isEmpty()) {
-                boolean matchesBillNumber = bill.billNumber != null &&
-                        bill.billNumber.toLowerCase().contains(query);
+        int generation = queryGeneration;
+        boolean local = useLocalStore;
+        String query = searchQuery;
+        long from = fromDate;
+        long to = toDate;
+        List<String> changedIds = new ArrayList<>();
+        List<BillSummary> inRange = new ArrayList<>();
+        for (BillSummary bill : changed) {
+            changedIds.add(bill.billId);
+            if ((from == 0 || bill.timestamp >= from) && (to == 0 || bill.timestamp <= to)) {
+                inRange.add(bill);
+            }
+        }
 
-                boolean matchesCustomerName = bill.customer != null &&
-                        bill.customer.name != null &&
-                        bill.customer.name.toLowerCase().contains(query);
+        // Keep the local store current too; in local mode it also decides which changes
+        // match the current search
+        BillSync.executor().execute(() -> {
+            billStore.upsertBills(userId, changed);
+            for (String billId : removed) {
+                billStore.deleteBill(billId);
+            }
+            List<BillRow> matching = formatRows(local
+                    ? billStore.loadMatching(userId, query, from, to, changedIds)
+                    : inRange);
 
-                boolean matchesPhone = bill.customer != null &&
-                        bill.customer.phone != null &&
-                        bill.customer.phone.contains(query);
+            runOnUiThread(() -> {
+                if (generation != queryGeneration || isDestroyed()) {
+                    return;
+                }
+                applyLiveChanges(matching, changedIds, removed);
+            });
+        });
+    }
 
-                matches = matchesBillNumber || matchesCustomerName || matchesPhone;
+    /**
+     * Fold changed bills into the loaded list in place.
+     *
+     * @param matching Changed bills that pass the current filters
+     * @param changedIds IDs of every changed bill, matching or not
+     * @param removed IDs of deleted bills
+     */
+    private void applyLiveChanges(List<BillRow> matching, List<String> changedIds,
+                                  List<String> removed) {
+        List<String> unindexed = new ArrayList<>(changedIds);
+        unindexed.addAll(removed);
+        List<BillSummary> indexed = new ArrayList<>();
+
+        Set<String> loaded = new HashSet<>();
+        for (String billId : changedIds) {
+            if (removeLoadedBill(billId)) {
+                loaded.add(billId);
             }
+        }
+        for (String billId : removed) {
+            removeLoadedBill(billId);
+        }
 
-            // Date range filter
-            if (matches && fromDate > 0 && bill.timestamp < fromDate) {
-                matches = false;
+        for (BillRow row : matching) {
+            BillSummary bill = row.bill;
+            int index = Collections.binarySearch(allBills, bill, BillSummary.NEWEST_FIRST);
+            int position = index >= 0 ? index : -index - 1;
+            // New bills past the loaded range arrive with a later page instead
+            if (position == allBills.size() && hasMoreBills && !loaded.contains(bill.billId)) {
+                continue;
             }
+            allBills.add(position, bill);
+            indexed.add(bill);
+            rows.put(bill.billId, row);
+        }
 
-            if (matches && toDate > 0 && bill.timestamp > toDate) {
-                matches = false;
+        onFilterThread(() -> {
+            for (String billId : unindexed) {
+                searchIndex.remove(billId);
             }
+            searchIndex.addAll(indexed);
+        });
+        applyFilters();
+    }
 
-            if (matches) {
-                filteredBills.add(bill);
+    /**
+     * @return Whether the bill was in the loaded list
+     */
+    private boolean removeLoadedBill(String billId) {
+        rows.remove(billId);
+        for (int i = 0; i < allBills.size(); i++) {
+            if (allBills.get(i).billId.equals(billId)) {
+                allBills.remove(i);
+                return true;
             }
         }
+        return false;
+    }
 
-        adapter.notifyDataSetChanged();
+    /**
+     * @return The list entry for a bill or index document, or null if it cannot be read,
+     *         e.g. a bill written by a newer app version or with mistyped fields
+     */
+    private static BillSummary toSummary(DocumentSnapshot doc, boolean fromIndex) {
+        try {
+            if (fromIndex) {
+                return BillSync.toSummary(doc);
+            }
+            Bill bill = BillCodec.decode(doc);
+            if (bill == null) {
+                return null;
+            }
+            BillSummary summary = BillSummary.fromBill(bill);
+            summary.billId = doc.getId();
+            return summary;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Skipping unreadable bill " + doc.getId(), e);
+            return null;
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (searchHandler != null && searchRunnable != null) {
-            searchHandler.removeCallbacks(searchRunnable);
-        }
+        stopListening();
+        cancelExport();
+        // A search still running sees the new generation and stops early
+        filterGeneration.incrementAndGet();
+        filterExecutor.shutdown();
     }
 }
\ No newline at end of file
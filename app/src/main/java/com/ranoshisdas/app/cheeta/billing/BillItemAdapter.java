@@ -7,25 +7,49 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.ranoshisdas.app.cheeta.R;
 import com.ranoshisdas.app.cheeta.models.BillItem;
+import com.ranoshisdas.app.cheeta.utils.Money;
+import com.ranoshisdas.app.cheeta.utils.StableIds;
 
-import java.util.List;
+public class BillItemAdapter extends ListAdapter<BillItem, BillItemAdapter.ViewHolder> {
 
-public class BillItemAdapter extends RecyclerView.Adapter<BillItemAdapter.ViewHolder> {
+    // Rows are matched by instance; quantity merges mutate a line in place and are
+    // refreshed with notifyItemChanged by the owner
+    private static final DiffUtil.ItemCallback<BillItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<BillItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull BillItem oldItem, @NonNull BillItem newItem) {
+            return oldItem == newItem;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull BillItem oldItem, @NonNull BillItem newItem) {
+            return oldItem.quantity == newItem.quantity
+                    && oldItem.price == newItem.price
+                    && oldItem.subtotal == newItem.subtotal;
+        }
+    };
 
-    private List<BillItem> items;
+    private final StableIds<BillItem> stableIds = StableIds.byIdentity();
     private OnItemRemoveListener removeListener;
 
     public interface OnItemRemoveListener {
         void onItemRemove(BillItem item);
     }
 
-    public BillItemAdapter(List<BillItem> items, OnItemRemoveListener removeListener) {
-        this.items = items;
+    public BillItemAdapter(OnItemRemoveListener removeListener) {
+        super(DIFF_CALLBACK);
         this.removeListener = removeListener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(getItem(position));
     }
 
     @NonNull
@@ -38,19 +62,14 @@ public class BillItemAdapter extends RecyclerView.Adapter<BillItemAdapter.ViewHo
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        BillItem item = items.get(position);
+        BillItem item = getItem(position);
         holder.nameText.setText(item.name);
-        holder.priceText.setText("₹" + String.format("%.2f", item.price));
+        holder.priceText.setText("₹" + Money.formatRupees(item.price));
         holder.quantityText.setText(" × " + item.quantity);
-        holder.subtotalText.setText(" = ₹" + String.format("%.2f", item.subtotal));
+        holder.subtotalText.setText(" = ₹" + Money.formatRupees(item.subtotal));
         holder.removeButton.setOnClickListener(v -> removeListener.onItemRemove(item));
     }
 
-    @Override
-    public int getItemCount() {
-        return items.size();
-    }
-
     static class ViewHolder extends RecyclerView.ViewHolder {
         TextView nameText, priceText, quantityText, subtotalText;
         ImageButton removeButton;
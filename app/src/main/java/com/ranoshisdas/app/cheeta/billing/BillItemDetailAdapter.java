@@ -10,6 +10,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.ranoshisdas.app.cheeta.R;
 import com.ranoshisdas.app.cheeta.models.BillItem;
+import com.ranoshisdas.app.cheeta.utils.Money;
 
 import java.util.List;
 
@@ -33,9 +34,9 @@ public class BillItemDetailAdapter extends RecyclerView.Adapter<BillItemDetailAd
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         BillItem item = items.get(position);
         holder.nameText.setText(item.name);
-        holder.priceText.setText("₹" + String.format("%.2f", item.price));
+        holder.priceText.setText("₹" + Money.formatRupees(item.price));
         holder.quantityText.setText(" × " + item.quantity);
-        holder.subtotalText.setText(" = ₹" + String.format("%.2f", item.subtotal));
+        holder.subtotalText.setText(" = ₹" + Money.formatRupees(item.subtotal));
     }
 
     @Override
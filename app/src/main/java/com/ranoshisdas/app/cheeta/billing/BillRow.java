@@ -0,0 +1,66 @@
+package com.ranoshisdas.app.cheeta.billing;
+
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+import com.ranoshisdas.app.cheeta.utils.Money;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * A bill history row with every label already formatted, so binding is only setText calls.
+ * Rows are built where bills are loaded, on a background thread, and reused while the bill
+ * stays unchanged.
+ */
+public class BillRow {
+
+    public final BillSummary bill;
+    public final String billNumberText;
+    public final String customerText;
+    public final String phoneText;
+    public final String totalText;
+    public final String dateText;
+    public final String itemCountText;
+
+    private BillRow(BillSummary bill, SimpleDateFormat dateFormat) {
+        this.bill = bill;
+
+        if (bill.billNumber != null && !bill.billNumber.isEmpty()) {
+            billNumberText = "Bill #" + bill.billNumber;
+        } else {
+            // Fallback for legacy bills without bill number
+            billNumberText = "Bill #" + bill.billId.substring(0, Math.min(8, bill.billId.length()));
+        }
+        customerText = "Customer: " + bill.customerName;
+        phoneText = "Phone: " + bill.customerPhone;
+        totalText = "Total: ₹" + Money.formatRupees(bill.total);
+        dateText = dateFormat.format(new Date(bill.timestamp));
+        itemCountText = "Items: " + bill.itemCount;
+    }
+
+    public String getBillId() {
+        return bill.billId;
+    }
+
+    public boolean hasSameText(BillRow other) {
+        return billNumberText.equals(other.billNumberText)
+                && customerText.equals(other.customerText)
+                && phoneText.equals(other.phoneText)
+                && totalText.equals(other.totalText)
+                && dateText.equals(other.dateText)
+                && itemCountText.equals(other.itemCountText);
+    }
+
+    /**
+     * Builds rows with one reused date format. Not thread-safe: keep each formatter on a
+     * single thread.
+     */
+    public static class Formatter {
+        private final SimpleDateFormat dateFormat =
+                new SimpleDateFormat("dd MMM yyyy, hh:mm a", Locale.getDefault());
+
+        public BillRow format(BillSummary bill) {
+            return new BillRow(bill, dateFormat);
+        }
+    }
+}
@@ -4,8 +4,10 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
+import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ProgressBar;
@@ -17,44 +19,49 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.ranoshisdas.app.cheeta.R;
 import com.ranoshisdas.app.cheeta.models.Bill;
 import com.ranoshisdas.app.cheeta.models.BillItem;
 import com.ranoshisdas.app.cheeta.models.Customer;
 import com.ranoshisdas.app.cheeta.models.Item;
 import com.ranoshisdas.app.cheeta.settings.InvoiceSettingsActivity;
+import com.ranoshisdas.app.cheeta.utils.CustomerDirectory;
 import com.ranoshisdas.app.cheeta.utils.FirebaseUtil;
 import com.ranoshisdas.app.cheeta.utils.InvoiceSettings;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.Transaction;
+import com.ranoshisdas.app.cheeta.utils.ItemCatalog;
 import com.ranoshisdas.app.cheeta.utils.BillNumberGenerator;
+import com.ranoshisdas.app.cheeta.utils.BillOutbox;
+import com.ranoshisdas.app.cheeta.utils.BillSequenceAllocator;
+import com.ranoshisdas.app.cheeta.utils.BillTotals;
+import com.ranoshisdas.app.cheeta.utils.Money;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 public class CreateBillActivity extends AppCompatActivity {
 
-    private EditText customerNameInput, customerPhoneInput, customerEmailInput;
+    // Ranked matches shown while typing in the item picker
+    private static final int PICKER_RESULT_LIMIT = 50;
+
+    private EditText customerNameInput, customerEmailInput;
+    private AutoCompleteTextView customerPhoneInput;
+    private EditText scanCodeInput;
     private RecyclerView selectedItemsRecycler;
     private Button addItemButton, saveBillButton;
     private TextView subtotalText, cgstText, sgstText, totalText;
     private ProgressBar progressBar;
 
     private List<Item> availableItems;
-    private List<BillItem> selectedItems;
+    private BillDraft draft;
     private BillItemAdapter adapter;
+    // Lines whose quantity was merged in place, rebound once the adapter commits a list
+    private final Set<BillItem> changedLines = Collections.newSetFromMap(new IdentityHashMap<>());
 
-    private double subtotal = 0;
-    private double cgstAmount = 0;
-    private double sgstAmount = 0;
-    private double total = 0;
+    // Label prefixes for the draft's tax rates, built once per draft
+    private String cgstLabel, sgstLabel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -62,11 +69,14 @@ public class CreateBillActivity extends AppCompatActivity {
         setContentView(R.layout.activity_create_bill);
 
         initializeViews();
+        startDraft();
         setupRecyclerView();
         loadAvailableItems();
         checkSettings();
 
         addItemButton.setOnClickListener(v -> showItemSelectionDialog());
+        setupScanInput();
+        setupCustomerSuggestions();
         saveBillButton.setOnClickListener(v -> saveBill());
     }
 
@@ -74,6 +84,7 @@ public class CreateBillActivity extends AppCompatActivity {
         customerNameInput = findViewById(R.id.customerNameInput);
         customerPhoneInput = findViewById(R.id.customerPhoneInput);
         customerEmailInput = findViewById(R.id.customerEmailInput);
+        scanCodeInput = findViewById(R.id.scanCodeInput);
         selectedItemsRecycler = findViewById(R.id.selectedItemsRecycler);
         addItemButton = findViewById(R.id.addItemButton);
         saveBillButton = findViewById(R.id.saveBillButton);
@@ -84,28 +95,83 @@ public class CreateBillActivity extends AppCompatActivity {
         progressBar = findViewById(R.id.progressBar);
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Pick up rates changed in settings, but never re-tax items already on the bill
+        if (draft.isEmpty()) {
+            startDraft();
+        }
+    }
+
+    /**
+     * Snapshot the tax rates for this bill and show its (empty) totals.
+     */
+    private void startDraft() {
+        float cgstRate = InvoiceSettings.getCGSTRate(this);
+        float sgstRate = InvoiceSettings.getSGSTRate(this);
+        draft = new BillDraft(cgstRate, sgstRate);
+        cgstLabel = "CGST (" + String.format("%.1f", cgstRate) + "%): ₹";
+        sgstLabel = "SGST (" + String.format("%.1f", sgstRate) + "%): ₹";
+        updateTotals();
+    }
+
     private void setupRecyclerView() {
-        selectedItems = new ArrayList<>();
-        adapter = new BillItemAdapter(selectedItems, this::removeItem);
+        adapter = new BillItemAdapter(this::removeItem);
         selectedItemsRecycler.setLayoutManager(new LinearLayoutManager(this));
         selectedItemsRecycler.setAdapter(adapter);
     }
 
+    /**
+     * Read the shared catalog; it is normally loaded already, so no download on open.
+     */
     private void loadAvailableItems() {
-        String userId = FirebaseUtil.auth().getCurrentUser().getUid();
-        availableItems = new ArrayList<>();
-
-        FirebaseUtil.db().collection("users")
-                .document(userId)
-                .collection("items")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    for (QueryDocumentSnapshot doc : queryDocumentSnapshots) {
-                        Item item = doc.toObject(Item.class);
-                        item.id = doc.getId();
-                        availableItems.add(item);
-                    }
-                });
+        ItemCatalog catalog = ItemCatalog.forCurrentUser();
+        availableItems = catalog.getItems();
+        catalog.observe(this, items -> availableItems = items);
+    }
+
+    /**
+     * Returning customers are suggested by phone prefix; picking one fills their details.
+     */
+    private void setupCustomerSuggestions() {
+        CustomerDirectory.forCurrentUser();
+        CustomerSuggestionAdapter suggestions = new CustomerSuggestionAdapter(this);
+        customerPhoneInput.setAdapter(suggestions);
+        customerPhoneInput.setOnItemClickListener((parent, view, position, id) -> {
+            Customer customer = suggestions.getItem(position);
+            customerNameInput.setText(customer.name);
+            customerEmailInput.setText(customer.email);
+        });
+    }
+
+    /**
+     * Scanners in keyboard mode type the code and press Enter. Each scan adds the item, or
+     * one more of it if already on the bill, and leaves the field ready for the next scan.
+     */
+    private void setupScanInput() {
+        scanCodeInput.setOnEditorActionListener((v, actionId, event) -> {
+            // Hardware Enter arrives as a down and an up event; act once
+            if (event != null && event.getAction() != KeyEvent.ACTION_DOWN) {
+                return true;
+            }
+            String code = scanCodeInput.getText().toString().trim();
+            scanCodeInput.setText("");
+            if (!code.isEmpty()) {
+                onCodeScanned(code);
+            }
+            return true;
+        });
+    }
+
+    private void onCodeScanned(String code) {
+        Item item = ItemCatalog.getInstance().findByCode(code);
+        if (item == null) {
+            Toast.makeText(this, "No item with code " + code, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        addItemToBill(item, 1);
     }
 
     private void checkSettings() {
@@ -121,24 +187,64 @@ public class CreateBillActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Searchable item picker. Each keystroke queries the catalog's prefix index; a blank
+     * query lists the whole catalog alphabetically.
+     */
     private void showItemSelectionDialog() {
         if (availableItems.isEmpty()) {
             Toast.makeText(this, "No items in inventory", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        String[] itemNames = new String[availableItems.size()];
-        for (int i = 0; i < availableItems.size(); i++) {
-            itemNames[i] = availableItems.get(i).name + " (₹" + availableItems.get(i).price + ")";
-        }
+        View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_pick_item, null);
+        EditText searchInput = dialogView.findViewById(R.id.itemSearchInput);
+        RecyclerView resultsRecycler = dialogView.findViewById(R.id.itemResultsRecycler);
 
-        new AlertDialog.Builder(this)
+        AlertDialog dialog = new AlertDialog.Builder(this)
                 .setTitle("Select Item")
-                .setItems(itemNames, (dialog, which) -> {
-                    Item selected = availableItems.get(which);
-                    showQuantityDialog(selected);
-                })
-                .show();
+                .setView(dialogView)
+                .setNegativeButton("Cancel", null)
+                .create();
+
+        ItemPickerAdapter pickerAdapter = new ItemPickerAdapter(item -> {
+            dialog.dismiss();
+            showQuantityDialog(item);
+        });
+        resultsRecycler.setLayoutManager(new LinearLayoutManager(this));
+        resultsRecycler.setAdapter(pickerAdapter);
+        pickerAdapter.submitList(availableItems);
+
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                String query = s.toString();
+                if (query.trim().isEmpty()) {
+                    pickerAdapter.submitList(availableItems);
+                } else {
+                    pickerAdapter.submitList(ItemCatalog.getInstance()
+                            .search(query, PICKER_RESULT_LIMIT));
+                }
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {}
+        });
+
+        // Done on the keyboard picks the best match
+        searchInput.setOnEditorActionListener((v, actionId, event) -> {
+            List<Item> results = pickerAdapter.getCurrentList();
+            if (!results.isEmpty()) {
+                dialog.dismiss();
+                showQuantityDialog(results.get(0));
+            }
+            return true;
+        });
+
+        dialog.show();
     }
 
     private void showQuantityDialog(Item item) {
@@ -149,7 +255,8 @@ public class CreateBillActivity extends AppCompatActivity {
         TextView subtotalText = dialogView.findViewById(R.id.subtotalText);
 
         itemNameText.setText(item.name);
-        itemPriceText.setText("Price: ₹" + String.format("%.2f", item.price));
+        long pricePaise = Money.ofRupees(item.price);
+        itemPriceText.setText("Price: ₹" + Money.format(pricePaise));
 
         quantityInput.addTextChangedListener(new TextWatcher() {
             @Override
@@ -159,8 +266,7 @@ public class CreateBillActivity extends AppCompatActivity {
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 if (!s.toString().isEmpty()) {
                     int qty = Integer.parseInt(s.toString());
-                    double subtotal = item.price * qty;
-                    subtotalText.setText("Subtotal: ₹" + String.format("%.2f", subtotal));
+                    subtotalText.setText("Subtotal: ₹" + Money.format(Money.times(pricePaise, qty)));
                 }
             }
 
@@ -168,7 +274,7 @@ public class CreateBillActivity extends AppCompatActivity {
             public void afterTextChanged(Editable s) {}
         });
 
-        subtotalText.setText("Subtotal: ₹" + String.format("%.2f", item.price));
+        subtotalText.setText("Subtotal: ₹" + Money.format(pricePaise));
 
         new AlertDialog.Builder(this)
                 .setTitle("Enter Quantity")
@@ -186,36 +292,71 @@ public class CreateBillActivity extends AppCompatActivity {
                 .show();
     }
 
+    /**
+     * Add to the bill, merging with the item's existing line if it has one.
+     */
     private void addItemToBill(Item item, int quantity) {
-        BillItem billItem = new BillItem(item, quantity);
-        selectedItems.add(billItem);
-        subtotal += billItem.subtotal;
+        int linesBefore = draft.size();
+        BillItem line = draft.add(item, quantity);
         updateTotals();
-        adapter.notifyDataSetChanged();
+
+        if (draft.size() == linesBefore) {
+            // Same row instance, so the list diff would not notice the new quantity
+            changedLines.add(line);
+        }
+        showLines();
     }
 
     private void removeItem(BillItem item) {
-        selectedItems.remove(item);
-        subtotal -= item.subtotal;
+        draft.remove(item);
         updateTotals();
-        adapter.notifyDataSetChanged();
+        showLines();
     }
 
-    private void updateTotals() {
-        // Get GST rates from settings
-        float cgstRate = InvoiceSettings.getCGSTRate(this);
-        float sgstRate = InvoiceSettings.getSGSTRate(this);
+    /**
+     * Submit the draft's lines. Merged lines are rebound once the diff is committed, when
+     * positions match what is shown; a newer submission drops an older one's callback, so
+     * every submission rebinds all lines changed so far.
+     */
+    private void showLines() {
+        adapter.submitList(new ArrayList<>(draft.getLines()), () -> {
+            List<BillItem> shown = adapter.getCurrentList();
+            for (BillItem line : changedLines) {
+                int position = shown.indexOf(line);
+                if (position >= 0) {
+                    adapter.notifyItemChanged(position);
+                }
+            }
+            changedLines.clear();
+        });
+    }
 
-        // Calculate GST amounts
-        cgstAmount = (subtotal * cgstRate) / 100;
-        sgstAmount = (subtotal * sgstRate) / 100;
-        total = subtotal + cgstAmount + sgstAmount;
+    private void updateTotals() {
+        BillTotals totals = draft.getTotals();
+        subtotalText.setText("Subtotal: ₹" + Money.format(totals.subtotal));
+        cgstText.setText(cgstLabel + Money.format(totals.cgst));
+        sgstText.setText(sgstLabel + Money.format(totals.sgst));
+        totalText.setText("Total: ₹" + Money.format(totals.total));
+    }
 
-        // Update UI
-        subtotalText.setText("Subtotal: ₹" + String.format("%.2f", subtotal));
-        cgstText.setText("CGST (" + String.format("%.1f", cgstRate) + "%): ₹" + String.format("%.2f", cgstAmount));
-        sgstText.setText("SGST (" + String.format("%.1f", sgstRate) + "%): ₹" + String.format("%.2f", sgstAmount));
-        totalText.setText("Total: ₹" + String.format("%.2f", total));
+    /**
+     * With overselling blocked, every line must be covered by the stock on hand. The catalog
+     * follows other terminals' sales live, so their bills count once they are synced.
+     *
+     * @return Whether the bill can be saved; shows why not otherwise
+     */
+    private boolean checkStock() {
+        ItemCatalog catalog = ItemCatalog.getInstance();
+        for (BillItem line : draft.getLines()) {
+            Item item = catalog.getItem(line.id);
+            int stock = item != null ? item.stock : 0;
+            if (line.quantity > stock) {
+                Toast.makeText(this, "Only " + stock + " of " + line.name + " in stock",
+                        Toast.LENGTH_LONG).show();
+                return false;
+            }
+        }
+        return true;
     }
 
     // REPLACE the saveBill() method in CreateBillActivity.java with this implementation
@@ -230,98 +371,75 @@ public class CreateBillActivity extends AppCompatActivity {
             return;
         }
 
-        if (selectedItems.isEmpty()) {
+        if (draft.isEmpty()) {
             Toast.makeText(this, "Add at least one item", Toast.LENGTH_SHORT).show();
             return;
         }
 
+        if (InvoiceSettings.isOversellingBlocked(this) && !checkStock()) {
+            return;
+        }
+
         progressBar.setVisibility(View.VISIBLE);
         saveBillButton.setEnabled(false);
 
+        // Save exactly the rates and totals shown, copied in case the draft changes meanwhile
+        List<BillItem> lines = new ArrayList<>(draft.getLines());
+        float cgstRate = draft.getCgstRate();
+        float sgstRate = draft.getSgstRate();
+        BillTotals billTotals = new BillTotals().compute(draft.getTotals().subtotal, cgstRate, sgstRate);
+
         String userId = FirebaseUtil.auth().getCurrentUser().getUid();
         String billMonth = BillNumberGenerator.getCurrentBillMonth();
 
-        // Counter document reference
-        DocumentReference counterRef = FirebaseUtil.db()
-                .collection("users")
-                .document(userId)
-                .collection("meta")
-                .document("bill_counters")
-                .collection("counters")
-                .document(billMonth);
-
-        // Run transaction to get next sequence and save bill
-        FirebaseUtil.db().runTransaction((Transaction transaction) -> {
-                    // Read counter
-                    DocumentSnapshot counterSnapshot = transaction.get(counterRef);
-
-                    int nextSequence = 1;
-                    if (counterSnapshot.exists() && counterSnapshot.contains("lastSequence")) {
-                        Long lastSeq = counterSnapshot.getLong("lastSequence");
-                        nextSequence = (lastSeq != null ? lastSeq.intValue() : 0) + 1;
-                    }
-
-                    // Update counter
-                    Map<String, Object> counterData = new HashMap<>();
-                    counterData.put("lastSequence", nextSequence);
-                    counterData.put("lastUpdated", System.currentTimeMillis());
-                    transaction.set(counterRef, counterData);
-
-                    // Generate bill number
-                    String billNumber = BillNumberGenerator.formatBillNumber(billMonth, nextSequence);
-
-                    // Create customer object
-                    Map<String, Object> customerData = new HashMap<>();
-                    customerData.put("name", name);
-                    customerData.put("phone", phone);
-                    customerData.put("email", email);
-
-                    // Get GST rates
-                    float cgstRate = InvoiceSettings.getCGSTRate(CreateBillActivity.this);
-                    float sgstRate = InvoiceSettings.getSGSTRate(CreateBillActivity.this);
-
-                    // Business details snapshot
-                    Map<String, Object> businessDetails = new HashMap<>();
-                    businessDetails.put("name", InvoiceSettings.getBusinessName(CreateBillActivity.this));
-                    businessDetails.put("address", InvoiceSettings.getAddress(CreateBillActivity.this));
-                    businessDetails.put("phone", InvoiceSettings.getPhone(CreateBillActivity.this));
-                    businessDetails.put("email", InvoiceSettings.getEmail(CreateBillActivity.this));
-                    businessDetails.put("gstin", InvoiceSettings.getGSTIN(CreateBillActivity.this));
-
-                    // Create bill data
-                    Map<String, Object> billData = new HashMap<>();
-                    billData.put("billNumber", billNumber);
-                    billData.put("billSequence", nextSequence);
-                    billData.put("billMonth", billMonth);
-                    billData.put("customer", customerData);
-                    billData.put("items", selectedItems);
-                    billData.put("subtotal", subtotal);
-                    billData.put("cgst", cgstAmount);
-                    billData.put("sgst", sgstAmount);
-                    billData.put("total", total);
-                    billData.put("cgstRate", cgstRate);
-                    billData.put("sgstRate", sgstRate);
-                    billData.put("businessDetails", businessDetails);
-                    billData.put("timestamp", System.currentTimeMillis());
-
-                    // Save bill with auto-generated ID
-                    DocumentReference billRef = FirebaseUtil.db()
-                            .collection("users")
-                            .document(userId)
-                            .collection("bills")
-                            .document(); // Auto-generated ID
-
-                    transaction.set(billRef, billData);
-
-                    return billNumber; // Return bill number for success handler
-                })
-                .addOnSuccessListener(billNumber -> {
+        Customer customer = new Customer();
+        customer.name = name;
+        customer.phone = phone;
+        customer.email = email;
+
+        Bill bill = new Bill();
+        bill.billMonth = billMonth;
+        bill.customer = customer;
+        bill.items = lines;
+        bill.subtotal = Money.toRupees(billTotals.subtotal);
+        bill.cgst = Money.toRupees(billTotals.cgst);
+        bill.sgst = Money.toRupees(billTotals.sgst);
+        bill.total = Money.toRupees(billTotals.total);
+        bill.cgstRate = cgstRate;
+        bill.sgstRate = sgstRate;
+        // Business details snapshot
+        bill.businessDetails = new Bill.BusinessDetails(
+                InvoiceSettings.getBusinessName(this),
+                InvoiceSettings.getAddress(this),
+                InvoiceSettings.getPhone(this),
+                InvoiceSettings.getEmail(this),
+                InvoiceSettings.getGSTIN(this));
+        bill.timestamp = System.currentTimeMillis();
+
+        // Number from this device's leased block, or a provisional one when none is left;
+        // the outbox leases the final number before the bill reaches Firestore
+        BillOutbox outbox = BillOutbox.getInstance(this);
+        bill.billSequence = BillSequenceAllocator.getInstance().tryNextLocal(this, userId, billMonth);
+
+        // Saved locally first, so checkout never waits for the network
+        outbox.enqueue(userId, bill)
+                .addOnSuccessListener(saved -> {
+                    CustomerDirectory.getInstance().remember(customer);
                     progressBar.setVisibility(View.GONE);
                     saveBillButton.setEnabled(true);
-                    Toast.makeText(this, "Bill " + billNumber + " saved successfully!", Toast.LENGTH_SHORT).show();
+                    String message = saved.billSequence > 0
+                            ? "Bill " + saved.billNumber + " saved successfully!"
+                            : "Bill saved as " + saved.billNumber + "; its number is assigned when online";
+                    Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
                     finish();
                 })
                 .addOnFailureListener(e -> {
+                    // The bill was never queued, so its number can go back unless a
+                    // later one has been taken since
+                    if (bill.billSequence > 0) {
+                        BillSequenceAllocator.getInstance()
+                                .release(this, userId, billMonth, bill.billSequence);
+                    }
                     progressBar.setVisibility(View.GONE);
                     saveBillButton.setEnabled(true);
                     Toast.makeText(this, "Failed to save bill: " + e.getMessage(), Toast.LENGTH_LONG).show();
@@ -0,0 +1,76 @@
+package com.ranoshisdas.app.cheeta.billing;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+
+import com.ranoshisdas.app.cheeta.models.Customer;
+import com.ranoshisdas.app.cheeta.utils.CustomerDirectory;
+
+import java.util.List;
+
+/**
+ * Phone number suggestions for returning customers. Filtering asks the
+ * {@link CustomerDirectory} prefix index directly instead of scanning the adapter's items.
+ */
+public class CustomerSuggestionAdapter extends ArrayAdapter<Customer> {
+
+    private static final int SUGGESTION_LIMIT = 8;
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            // Runs on the filter thread; the directory allows lookups from any thread
+            List<Customer> matches = CustomerDirectory.getInstance()
+                    .findByPhonePrefix(constraint != null ? constraint.toString() : null,
+                            SUGGESTION_LIMIT);
+            FilterResults results = new FilterResults();
+            results.values = matches;
+            results.count = matches.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            setNotifyOnChange(false);
+            clear();
+            if (results.values != null) {
+                addAll((List<Customer>) results.values);
+            }
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public CharSequence convertResultToString(Object resultValue) {
+            return ((Customer) resultValue).phone;
+        }
+    };
+
+    public CustomerSuggestionAdapter(Context context) {
+        super(context, android.R.layout.simple_list_item_2);
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+
+    @NonNull
+    @Override
+    public View getView(int position, View convertView, @NonNull ViewGroup parent) {
+        View view = convertView != null ? convertView : LayoutInflater.from(getContext())
+                .inflate(android.R.layout.simple_list_item_2, parent, false);
+        Customer customer = getItem(position);
+        ((TextView) view.findViewById(android.R.id.text1)).setText(customer.phone);
+        ((TextView) view.findViewById(android.R.id.text2)).setText(customer.name);
+        return view;
+    }
+}
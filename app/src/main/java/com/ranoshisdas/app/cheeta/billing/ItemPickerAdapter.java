@@ -0,0 +1,93 @@
+package com.ranoshisdas.app.cheeta.billing;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.ranoshisdas.app.cheeta.models.Item;
+import com.ranoshisdas.app.cheeta.utils.Money;
+import com.ranoshisdas.app.cheeta.utils.StableIds;
+
+import java.util.Objects;
+
+/**
+ * Result list of the type-ahead item picker on Create Bill.
+ */
+public class ItemPickerAdapter extends ListAdapter<Item, ItemPickerAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<Item> DIFF_CALLBACK = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return Objects.equals(oldItem.id, newItem.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            // Catalog items are replaced, never mutated, when they change
+            return oldItem == newItem;
+        }
+    };
+
+    private final StableIds<String> stableIds = StableIds.byKey();
+    private OnItemPickedListener pickListener;
+
+    public interface OnItemPickedListener {
+        void onItemPicked(Item item);
+    }
+
+    public ItemPickerAdapter(OnItemPickedListener pickListener) {
+        super(DIFF_CALLBACK);
+        this.pickListener = pickListener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(getItem(position).id);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(android.R.layout.simple_list_item_2, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                pickListener.onItemPicked(getItem(position));
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Item item = getItem(position);
+        holder.nameText.setText(item.name);
+
+        String price = "₹" + Money.formatRupees(item.price);
+        if (item.code != null && !item.code.isEmpty()) {
+            holder.detailText.setText(item.code + "  •  " + price);
+        } else {
+            holder.detailText.setText(price);
+        }
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        TextView nameText, detailText;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            nameText = itemView.findViewById(android.R.id.text1);
+            detailText = itemView.findViewById(android.R.id.text2);
+        }
+    }
+}
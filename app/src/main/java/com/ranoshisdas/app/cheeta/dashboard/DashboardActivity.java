@@ -1,5 +1,6 @@
 package com.ranoshisdas.app.cheeta.dashboard;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.widget.Button;
@@ -15,8 +16,14 @@ import com.ranoshisdas.app.cheeta.billing.BillHistoryActivity;
 import com.ranoshisdas.app.cheeta.billing.CreateBillActivity;
 import com.ranoshisdas.app.cheeta.inventory.InventoryActivity;
 import com.ranoshisdas.app.cheeta.settings.InvoiceSettingsActivity;
+import com.ranoshisdas.app.cheeta.utils.BillExporter;
+import com.ranoshisdas.app.cheeta.utils.BillOutbox;
+import com.ranoshisdas.app.cheeta.utils.BillRepository;
+import com.ranoshisdas.app.cheeta.utils.CustomerDirectory;
 import com.ranoshisdas.app.cheeta.utils.FirebaseUtil;
+import com.ranoshisdas.app.cheeta.utils.InvoiceCache;
 import com.ranoshisdas.app.cheeta.utils.InvoiceSettings;
+import com.ranoshisdas.app.cheeta.utils.ItemCatalog;
 
 public class DashboardActivity extends AppCompatActivity {
 
@@ -33,6 +40,12 @@ public class DashboardActivity extends AppCompatActivity {
         setupListeners();
         displayUserInfo();
         checkFirstRun();
+
+        // Warm the inventory catalog so Create Bill opens with items ready
+        ItemCatalog.forCurrentUser();
+
+        // Send any bills saved while offline or before the app last closed
+        BillOutbox.getInstance(this).flush();
     }
 
     private void initializeViews() {
@@ -87,6 +100,14 @@ public class DashboardActivity extends AppCompatActivity {
                 .setMessage("Are you sure you want to logout?")
                 .setPositiveButton("Yes", (dialog, which) -> {
                     FirebaseUtil.auth().signOut();
+                    BillRepository.getInstance().clear();
+                    ItemCatalog.getInstance().stop();
+                    CustomerDirectory.getInstance().stop();
+                    Context appContext = getApplicationContext();
+                    new Thread(() -> {
+                        InvoiceCache.clear(appContext);
+                        BillExporter.clear(appContext);
+                    }).start();
                     startActivity(new Intent(this, LoginActivity.class));
                     finish();
                 })
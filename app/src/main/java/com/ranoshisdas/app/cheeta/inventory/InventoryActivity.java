@@ -13,21 +13,20 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.ranoshisdas.app.cheeta.R;
 import com.ranoshisdas.app.cheeta.models.Item;
 import com.ranoshisdas.app.cheeta.utils.FirebaseUtil;
+import com.ranoshisdas.app.cheeta.utils.ItemCatalog;
+import com.ranoshisdas.app.cheeta.utils.Money;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class InventoryActivity extends AppCompatActivity {
 
     private RecyclerView recyclerView;
     private ItemAdapter adapter;
-    private List<Item> itemList;
     private FloatingActionButton addButton;
     private ProgressBar progressBar;
 
@@ -50,39 +49,31 @@ public class InventoryActivity extends AppCompatActivity {
     }
 
     private void setupRecyclerView() {
-        itemList = new ArrayList<>();
-        adapter = new ItemAdapter(itemList, this::showEditItemDialog, this::deleteItem);
+        adapter = new ItemAdapter(this::showEditItemDialog, this::deleteItem);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(adapter);
     }
 
+    /**
+     * Items come from the shared catalog, which also delivers our own adds, edits and
+     * deletes as soon as they are written, so nothing is reloaded after a change.
+     */
     private void loadItems() {
-        progressBar.setVisibility(View.VISIBLE);
-        String userId = FirebaseUtil.auth().getCurrentUser().getUid();
-
-        FirebaseUtil.db().collection("users")
-                .document(userId)
-                .collection("items")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    itemList.clear();
-                    for (QueryDocumentSnapshot doc : queryDocumentSnapshots) {
-                        Item item = doc.toObject(Item.class);
-                        item.id = doc.getId();
-                        itemList.add(item);
-                    }
-                    adapter.notifyDataSetChanged();
-                    progressBar.setVisibility(View.GONE);
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Failed to load items", Toast.LENGTH_SHORT).show();
-                    progressBar.setVisibility(View.GONE);
-                });
+        ItemCatalog catalog = ItemCatalog.forCurrentUser();
+        if (!catalog.isLoaded()) {
+            progressBar.setVisibility(View.VISIBLE);
+        }
+
+        catalog.observe(this, items -> {
+            adapter.submitList(items);
+            progressBar.setVisibility(View.GONE);
+        });
     }
 
     private void showAddItemDialog() {
         View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_add_item, null);
         EditText nameInput = dialogView.findViewById(R.id.nameInput);
+        EditText codeInput = dialogView.findViewById(R.id.codeInput);
         EditText priceInput = dialogView.findViewById(R.id.priceInput);
         EditText stockInput = dialogView.findViewById(R.id.stockInput);
 
@@ -91,6 +82,7 @@ public class InventoryActivity extends AppCompatActivity {
                 .setView(dialogView)
                 .setPositiveButton("Add", (dialog, which) -> {
                     String name = nameInput.getText().toString().trim();
+                    String code = codeInput.getText().toString().trim();
                     String priceStr = priceInput.getText().toString().trim();
                     String stockStr = stockInput.getText().toString().trim();
 
@@ -99,7 +91,15 @@ public class InventoryActivity extends AppCompatActivity {
                         return;
                     }
 
-                    addItem(name, Double.parseDouble(priceStr), Integer.parseInt(stockStr));
+                    long pricePaise;
+                    try {
+                        pricePaise = Money.parse(priceStr);
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Enter a valid price", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+
+                    addItem(name, code, pricePaise, Integer.parseInt(stockStr));
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -108,18 +108,23 @@ public class InventoryActivity extends AppCompatActivity {
     private void showEditItemDialog(Item item) {
         View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_add_item, null);
         EditText nameInput = dialogView.findViewById(R.id.nameInput);
+        EditText codeInput = dialogView.findViewById(R.id.codeInput);
         EditText priceInput = dialogView.findViewById(R.id.priceInput);
         EditText stockInput = dialogView.findViewById(R.id.stockInput);
 
         nameInput.setText(item.name);
-        priceInput.setText(String.valueOf(item.price));
-        stockInput.setText(String.valueOf(item.stock));
+        codeInput.setText(item.code);
+        priceInput.setText(Money.formatRupees(item.price));
+        // Stock as shown; sales synced while the dialog is open must not be undone
+        int loadedStock = item.stock;
+        stockInput.setText(String.valueOf(loadedStock));
 
         new AlertDialog.Builder(this)
                 .setTitle("Edit Item")
                 .setView(dialogView)
                 .setPositiveButton("Update", (dialog, which) -> {
                     String name = nameInput.getText().toString().trim();
+                    String code = codeInput.getText().toString().trim();
                     String priceStr = priceInput.getText().toString().trim();
                     String stockStr = stockInput.getText().toString().trim();
 
@@ -128,18 +133,28 @@ public class InventoryActivity extends AppCompatActivity {
                         return;
                     }
 
-                    updateItem(item.id, name, Double.parseDouble(priceStr), Integer.parseInt(stockStr));
+                    long pricePaise;
+                    try {
+                        pricePaise = Money.parse(priceStr);
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Enter a valid price", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+
+                    int stockChange = Integer.parseInt(stockStr) - loadedStock;
+                    updateItem(item.id, name, code, pricePaise, stockChange);
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
-    private void addItem(String name, double price, int stock) {
+    private void addItem(String name, String code, long pricePaise, int stock) {
         String userId = FirebaseUtil.auth().getCurrentUser().getUid();
 
         Map<String, Object> itemData = new HashMap<>();
         itemData.put("name", name);
-        itemData.put("price", price);
+        itemData.put("code", code.isEmpty() ? null : code);
+        itemData.put("price", Money.toRupees(pricePaise));
         itemData.put("stock", stock);
 
         FirebaseUtil.db().collection("users")
@@ -148,19 +163,25 @@ public class InventoryActivity extends AppCompatActivity {
                 .add(itemData)
                 .addOnSuccessListener(documentReference -> {
                     Toast.makeText(this, "Item added successfully", Toast.LENGTH_SHORT).show();
-                    loadItems();
                 })
                 .addOnFailureListener(e ->
                         Toast.makeText(this, "Failed to add item", Toast.LENGTH_SHORT).show());
     }
 
-    private void updateItem(String itemId, String name, double price, int stock) {
+    /**
+     * @param stockChange Units the user added (or removed) in the dialog. Applied as an
+     *                    increment, so decrements from bills synced meanwhile are kept
+     */
+    private void updateItem(String itemId, String name, String code, long pricePaise, int stockChange) {
         String userId = FirebaseUtil.auth().getCurrentUser().getUid();
 
         Map<String, Object> updates = new HashMap<>();
         updates.put("name", name);
-        updates.put("price", price);
-        updates.put("stock", stock);
+        updates.put("code", code.isEmpty() ? null : code);
+        updates.put("price", Money.toRupees(pricePaise));
+        if (stockChange != 0) {
+            updates.put("stock", FieldValue.increment(stockChange));
+        }
 
         FirebaseUtil.db().collection("users")
                 .document(userId)
@@ -169,7 +190,6 @@ public class InventoryActivity extends AppCompatActivity {
                 .update(updates)
                 .addOnSuccessListener(aVoid -> {
                     Toast.makeText(this, "Item updated successfully", Toast.LENGTH_SHORT).show();
-                    loadItems();
                 })
                 .addOnFailureListener(e ->
                         Toast.makeText(this, "Failed to update item", Toast.LENGTH_SHORT).show());
@@ -189,7 +209,6 @@ public class InventoryActivity extends AppCompatActivity {
                             .delete()
                             .addOnSuccessListener(aVoid -> {
                                 Toast.makeText(this, "Item deleted", Toast.LENGTH_SHORT).show();
-                                loadItems();
                             })
                             .addOnFailureListener(e ->
                                     Toast.makeText(this, "Failed to delete item", Toast.LENGTH_SHORT).show());
@@ -7,16 +7,35 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.ranoshisdas.app.cheeta.R;
 import com.ranoshisdas.app.cheeta.models.Item;
+import com.ranoshisdas.app.cheeta.utils.Money;
+import com.ranoshisdas.app.cheeta.utils.StableIds;
 
-import java.util.List;
+import java.util.Objects;
 
-public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
+public class ItemAdapter extends ListAdapter<Item, ItemAdapter.ViewHolder> {
 
-    private List<Item> items;
+    private static final DiffUtil.ItemCallback<Item> DIFF_CALLBACK = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return Objects.equals(oldItem.id, newItem.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.price == newItem.price
+                    && oldItem.stock == newItem.stock
+                    && Objects.equals(oldItem.name, newItem.name)
+                    && Objects.equals(oldItem.code, newItem.code);
+        }
+    };
+
+    private final StableIds<String> stableIds = StableIds.byKey();
     private OnItemClickListener editListener;
     private OnItemClickListener deleteListener;
 
@@ -24,10 +43,16 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
         void onItemClick(Item item);
     }
 
-    public ItemAdapter(List<Item> items, OnItemClickListener editListener, OnItemClickListener deleteListener) {
-        this.items = items;
+    public ItemAdapter(OnItemClickListener editListener, OnItemClickListener deleteListener) {
+        super(DIFF_CALLBACK);
         this.editListener = editListener;
         this.deleteListener = deleteListener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(getItem(position).id);
     }
 
     @NonNull
@@ -40,20 +65,19 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Item item = items.get(position);
+        Item item = getItem(position);
         holder.nameText.setText(item.name);
-        holder.priceText.setText("₹" + String.format("%.2f", item.price));
-        holder.stockText.setText("Stock: " + item.stock);
+        holder.priceText.setText("₹" + Money.formatRupees(item.price));
+        if (item.code != null && !item.code.isEmpty()) {
+            holder.stockText.setText("Stock: " + item.stock + " | Code: " + item.code);
+        } else {
+            holder.stockText.setText("Stock: " + item.stock);
+        }
 
         holder.editButton.setOnClickListener(v -> editListener.onItemClick(item));
         holder.deleteButton.setOnClickListener(v -> deleteListener.onItemClick(item));
     }
 
-    @Override
-    public int getItemCount() {
-        return items.size();
-    }
-
     static class ViewHolder extends RecyclerView.ViewHolder {
         TextView nameText, priceText, stockText;
         ImageButton editButton, deleteButton;
@@ -1,5 +1,7 @@
 package com.ranoshisdas.app.cheeta.models;
 
+import com.ranoshisdas.app.cheeta.utils.Money;
+
 import java.io.Serializable;
 
 public class BillItem implements Serializable {
@@ -14,12 +16,25 @@ public class BillItem implements Serializable {
     public BillItem(Item item, int quantity) {
         this.id = item.id;
         this.name = item.name;
-        this.price = item.price;
+        this.price = Money.toRupees(Money.ofRupees(item.price));
         this.quantity = quantity;
-        this.subtotal = price * quantity;
+        updateSubtotal();
     }
 
     public void updateSubtotal() {
-        this.subtotal = price * quantity;
+        this.subtotal = Money.toRupees(subtotalPaise());
+    }
+
+    // Not named get* so Firestore does not store them as extra fields
+
+    public long pricePaise() {
+        return Money.ofRupees(price);
+    }
+
+    /**
+     * Line amount in paise, computed exactly from price and quantity.
+     */
+    public long subtotalPaise() {
+        return Money.times(pricePaise(), quantity);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package com.ranoshisdas.app.cheeta.models;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact list-screen view of a bill, stored under users/{uid}/bill_index/{billId}.
+ * Holds only what the history list shows; the full {@link Bill} is fetched when opened.
+ */
+public class BillSummary {
+
+    /** Order of the history list: newest first, ties broken by bill ID like the queries. */
+    public static final Comparator<BillSummary> NEWEST_FIRST = (a, b) -> {
+        int byTime = Long.compare(b.timestamp, a.timestamp);
+        return byTime != 0 ? byTime : b.billId.compareTo(a.billId);
+    };
+
+    public String billId;        // Same as the bill document ID, not stored in the document
+    public String billNumber;
+    public String customerName;
+    public String customerPhone;
+    public double total;
+    public long timestamp;
+    public int itemCount;
+
+    public BillSummary() {}
+
+    public static BillSummary fromBill(Bill bill) {
+        BillSummary summary = new BillSummary();
+        summary.billId = bill.billId;
+        summary.billNumber = bill.billNumber;
+        if (bill.customer != null) {
+            summary.customerName = bill.customer.name;
+            summary.customerPhone = bill.customer.phone;
+        }
+        summary.total = bill.total;
+        summary.timestamp = bill.timestamp;
+        summary.itemCount = bill.items != null ? bill.items.size() : 0;
+        return summary;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("billNumber", billNumber);
+        data.put("customerName", customerName);
+        data.put("customerPhone", customerPhone);
+        data.put("total", total);
+        data.put("timestamp", timestamp);
+        data.put("itemCount", itemCount);
+        return data;
+    }
+}
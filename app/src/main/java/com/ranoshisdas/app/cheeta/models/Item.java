@@ -3,6 +3,7 @@ package com.ranoshisdas.app.cheeta.models;
 public class Item {
     public String id;
     public String name;
+    public String code;     // Optional SKU or barcode
     public double price;
     public int stock;
 
@@ -6,7 +6,9 @@ import android.text.TextWatcher;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.ProgressBar;
+import android.widget.RadioGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -14,6 +16,7 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.android.material.textfield.TextInputEditText;
 import com.ranoshisdas.app.cheeta.R;
+import com.ranoshisdas.app.cheeta.utils.ImageUtils;
 import com.ranoshisdas.app.cheeta.utils.InvoiceSettings;
 
 public class InvoiceSettingsActivity extends AppCompatActivity {
@@ -21,6 +24,9 @@ public class InvoiceSettingsActivity extends AppCompatActivity {
     private TextInputEditText businessNameInput, addressInput, phoneInput, emailInput, gstinInput;
     private TextInputEditText cgstRateInput, sgstRateInput;
     private TextView totalGstText;
+    private CheckBox blockOversellingCheck;
+    private RadioGroup imageFormatGroup;
+    private TextInputEditText imageQualityInput;
     private Button saveButton;
     private ProgressBar progressBar;
 
@@ -49,6 +55,9 @@ public class InvoiceSettingsActivity extends AppCompatActivity {
         cgstRateInput = findViewById(R.id.cgstRateInput);
         sgstRateInput = findViewById(R.id.sgstRateInput);
         totalGstText = findViewById(R.id.totalGstText);
+        blockOversellingCheck = findViewById(R.id.blockOversellingCheck);
+        imageFormatGroup = findViewById(R.id.imageFormatGroup);
+        imageQualityInput = findViewById(R.id.imageQualityInput);
         saveButton = findViewById(R.id.saveButton);
         progressBar = findViewById(R.id.progressBar);
     }
@@ -61,6 +70,9 @@ public class InvoiceSettingsActivity extends AppCompatActivity {
         gstinInput.setText(InvoiceSettings.getGSTIN(this));
         cgstRateInput.setText(String.valueOf(InvoiceSettings.getCGSTRate(this)));
         sgstRateInput.setText(String.valueOf(InvoiceSettings.getSGSTRate(this)));
+        blockOversellingCheck.setChecked(InvoiceSettings.isOversellingBlocked(this));
+        imageFormatGroup.check(getFormatButtonId(InvoiceSettings.getImageFormat(this)));
+        imageQualityInput.setText(String.valueOf(InvoiceSettings.getImageQuality(this)));
 
         updateTotalGST();
     }
@@ -104,6 +116,7 @@ public class InvoiceSettingsActivity extends AppCompatActivity {
         gstinInput.setError(null);
         cgstRateInput.setError(null);
         sgstRateInput.setError(null);
+        imageQualityInput.setError(null);
 
         // Get values
         String businessName = businessNameInput.getText().toString().trim();
@@ -163,6 +176,21 @@ public class InvoiceSettingsActivity extends AppCompatActivity {
             return;
         }
 
+        // Validate image quality
+        int imageQuality;
+        try {
+            imageQuality = Integer.parseInt(imageQualityInput.getText().toString().trim());
+            String qualityError = InvoiceSettings.validateImageQuality(imageQuality);
+            if (qualityError != null) {
+                imageQualityInput.setError(qualityError);
+                hasErrors = true;
+            }
+        } catch (NumberFormatException e) {
+            imageQualityInput.setError("Invalid quality");
+            hasErrors = true;
+            return;
+        }
+
         if (hasErrors) {
             Toast.makeText(this, "Please fix the errors", Toast.LENGTH_SHORT).show();
             return;
@@ -172,6 +200,9 @@ public class InvoiceSettingsActivity extends AppCompatActivity {
         progressBar.setVisibility(View.VISIBLE);
         saveButton.setEnabled(false);
 
+        boolean blockOverselling = blockOversellingCheck.isChecked();
+        String imageFormat = getCheckedFormat();
+
         // Simulate async save (in case you want to add Firestore later)
         new Thread(() -> {
             InvoiceSettings.saveAllSettings(
@@ -184,6 +215,9 @@ public class InvoiceSettingsActivity extends AppCompatActivity {
                     cgstRate,
                     sgstRate
             );
+            InvoiceSettings.setOversellingBlocked(this, blockOverselling);
+            InvoiceSettings.setImageFormat(this, imageFormat);
+            InvoiceSettings.setImageQuality(this, imageQuality);
 
             runOnUiThread(() -> {
                 progressBar.setVisibility(View.GONE);
@@ -194,6 +228,27 @@ public class InvoiceSettingsActivity extends AppCompatActivity {
         }).start();
     }
 
+    private static int getFormatButtonId(String format) {
+        if (ImageUtils.FORMAT_WEBP.equals(format)) {
+            return R.id.imageFormatWebp;
+        }
+        if (ImageUtils.FORMAT_JPEG.equals(format)) {
+            return R.id.imageFormatJpeg;
+        }
+        return R.id.imageFormatPng;
+    }
+
+    private String getCheckedFormat() {
+        int checked = imageFormatGroup.getCheckedRadioButtonId();
+        if (checked == R.id.imageFormatWebp) {
+            return ImageUtils.FORMAT_WEBP;
+        }
+        if (checked == R.id.imageFormatJpeg) {
+            return ImageUtils.FORMAT_JPEG;
+        }
+        return ImageUtils.FORMAT_PNG;
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
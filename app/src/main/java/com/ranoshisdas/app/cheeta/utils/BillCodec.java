@@ -0,0 +1,312 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillItem;
+import com.ranoshisdas.app.cheeta.models.Customer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stored layout of users/{uid}/bills/{billId}.
+ *
+ * Version 1 uses short keys, with money in whole paise and rates in basis points:
+ * <pre>
+ *   v          layout version
+ *   n, q, m    bill number, sequence, month
+ *   timestamp  creation time; keeps its full name since bill queries order by it
+ *   c          [name, phone, email]
+ *   i          items as one flat array, {@link #ITEM_STRIDE} values per line:
+ *              [id, name, price, quantity, id, name, ...]; line amounts are recomputed
+ *   s, x, y, t subtotal, CGST, SGST, total
+ *   r          [CGST rate, SGST rate]
+ *   b          ID of the business details in users/{uid}/business_profiles
+ * </pre>
+ * Business details are the same on nearly every bill, so they are stored once per distinct
+ * version under an ID derived from their content, see {@link #businessProfileId}. Bills
+ * read with {@link #decode} have no business details until the caller resolves {@code b}.
+ *
+ * Documents without a version were written by earlier app versions and are read by
+ * {@link BillCompatibilityHelper#fromLegacyDocument}. Both layouts are decoded by reading
+ * the map directly; no reflection is involved.
+ *
+ * Bills kept on the device, e.g. in {@link BillOutbox}, use the same fields as JSON, see
+ * {@link #toJson}.
+ */
+public final class BillCodec {
+
+    public static final int VERSION = 1;
+
+    /** Values per line in the item array. */
+    public static final int ITEM_STRIDE = 4;
+
+    private static final String KEY_VERSION = "v";
+    private static final String KEY_NUMBER = "n";
+    private static final String KEY_SEQUENCE = "q";
+    private static final String KEY_MONTH = "m";
+    private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_CUSTOMER = "c";
+    private static final String KEY_ITEMS = "i";
+    private static final String KEY_SUBTOTAL = "s";
+    private static final String KEY_CGST = "x";
+    private static final String KEY_SGST = "y";
+    private static final String KEY_TOTAL = "t";
+    private static final String KEY_RATES = "r";
+    private static final String KEY_BUSINESS = "b";
+    // JSON only: the business details themselves, since there is no profile to refer to
+    private static final String KEY_BUSINESS_DETAILS = "bd";
+
+    private BillCodec() {}
+
+    /**
+     * Fields to store for a bill; the ID itself is not stored. Business details are
+     * replaced by their profile ID, so {@link #encodeBusinessProfile} must be written too.
+     */
+    public static Map<String, Object> encode(Bill bill) {
+        Map<String, Object> data = new HashMap<>(16);
+        data.put(KEY_VERSION, VERSION);
+        data.put(KEY_NUMBER, bill.billNumber);
+        data.put(KEY_SEQUENCE, bill.billSequence);
+        data.put(KEY_MONTH, bill.billMonth);
+        data.put(KEY_TIMESTAMP, bill.timestamp);
+
+        if (bill.customer != null) {
+            data.put(KEY_CUSTOMER, Arrays.asList(
+                    bill.customer.name, bill.customer.phone, bill.customer.email));
+        }
+
+        int lineCount = bill.items != null ? bill.items.size() : 0;
+        List<Object> items = new ArrayList<>(lineCount * ITEM_STRIDE);
+        for (int i = 0; i < lineCount; i++) {
+            BillItem line = bill.items.get(i);
+            items.add(line.id);
+            items.add(line.name);
+            items.add(line.pricePaise());
+            items.add(line.quantity);
+        }
+        data.put(KEY_ITEMS, items);
+
+        data.put(KEY_SUBTOTAL, Money.ofRupees(bill.subtotal));
+        data.put(KEY_CGST, Money.ofRupees(bill.cgst));
+        data.put(KEY_SGST, Money.ofRupees(bill.sgst));
+        data.put(KEY_TOTAL, Money.ofRupees(bill.total));
+        data.put(KEY_RATES, Arrays.asList(
+                Money.basisPoints(bill.cgstRate), Money.basisPoints(bill.sgstRate)));
+
+        if (bill.businessDetails != null) {
+            data.put(KEY_BUSINESS, businessProfileId(bill.businessDetails));
+        }
+        return data;
+    }
+
+    /**
+     * Read a bill document in any layout.
+     *
+     * @throws IllegalArgumentException If the document was written by a newer app version
+     */
+    public static Bill decode(DocumentSnapshot doc) {
+        Map<String, Object> data = doc.getData();
+        if (data == null || !data.containsKey(KEY_VERSION)) {
+            return BillCompatibilityHelper.fromLegacyDocument(doc);
+        }
+        return decode(doc.getId(), data);
+    }
+
+    /**
+     * Read a versioned bill document's fields.
+     *
+     * @throws IllegalArgumentException If the layout version is not supported
+     */
+    public static Bill decode(String billId, Map<String, Object> data) {
+        int version = (int) getLong(data, KEY_VERSION);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported bill layout version " + version);
+        }
+
+        Bill bill = new Bill();
+        bill.billId = billId;
+        bill.billNumber = (String) data.get(KEY_NUMBER);
+        bill.billSequence = (int) getLong(data, KEY_SEQUENCE);
+        bill.billMonth = (String) data.get(KEY_MONTH);
+        bill.timestamp = getLong(data, KEY_TIMESTAMP);
+
+        List<?> customer = (List<?>) data.get(KEY_CUSTOMER);
+        if (customer != null) {
+            bill.customer = new Customer();
+            bill.customer.name = (String) customer.get(0);
+            bill.customer.phone = (String) customer.get(1);
+            bill.customer.email = (String) customer.get(2);
+        }
+
+        List<?> items = (List<?>) data.get(KEY_ITEMS);
+        int lineCount = items != null ? items.size() / ITEM_STRIDE : 0;
+        bill.items = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            int at = i * ITEM_STRIDE;
+            BillItem line = new BillItem();
+            line.id = (String) items.get(at);
+            line.name = (String) items.get(at + 1);
+            line.price = Money.toRupees(((Number) items.get(at + 2)).longValue());
+            line.quantity = ((Number) items.get(at + 3)).intValue();
+            line.updateSubtotal();
+            bill.items.add(line);
+        }
+
+        bill.subtotal = Money.toRupees(getLong(data, KEY_SUBTOTAL));
+        bill.cgst = Money.toRupees(getLong(data, KEY_CGST));
+        bill.sgst = Money.toRupees(getLong(data, KEY_SGST));
+        bill.total = Money.toRupees(getLong(data, KEY_TOTAL));
+
+        List<?> rates = (List<?>) data.get(KEY_RATES);
+        if (rates != null) {
+            bill.cgstRate = ((Number) rates.get(0)).intValue() / 100f;
+            bill.sgstRate = ((Number) rates.get(1)).intValue() / 100f;
+        }
+        return bill;
+    }
+
+    /**
+     * @return ID of the business profile a bill document refers to, or null if it has none
+     *         or embeds its details (legacy layout)
+     */
+    public static String getBusinessProfileId(DocumentSnapshot doc) {
+        return doc.contains(KEY_VERSION) ? doc.getString(KEY_BUSINESS) : null;
+    }
+
+    /* =========================
+       BUSINESS PROFILES
+       ========================= */
+
+    /**
+     * Document ID for a set of business details: a hash of their content, so identical
+     * details written from any device or bill map to the same document, and changed
+     * details get a new one while old bills keep pointing at the old one.
+     */
+    public static String businessProfileId(Bill.BusinessDetails details) {
+        return new ContentHash()
+                .add(details.name)
+                .add(details.address)
+                .add(details.phone)
+                .add(details.email)
+                .add(details.gstin)
+                .toHex(32);
+    }
+
+    /**
+     * Fields of users/{uid}/business_profiles/{businessProfileId(details)}.
+     */
+    public static Map<String, Object> encodeBusinessProfile(Bill.BusinessDetails details) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", details.name);
+        data.put("address", details.address);
+        data.put("phone", details.phone);
+        data.put("email", details.email);
+        data.put("gstin", details.gstin);
+        return data;
+    }
+
+    public static Bill.BusinessDetails decodeBusinessProfile(DocumentSnapshot doc) {
+        return new Bill.BusinessDetails(
+                doc.getString("name"),
+                doc.getString("address"),
+                doc.getString("phone"),
+                doc.getString("email"),
+                doc.getString("gstin"));
+    }
+
+    /* =========================
+       JSON
+       ========================= */
+
+    /**
+     * The bill as JSON for storing on the device: the fields of {@link #encode}, with the
+     * business details embedded rather than referred to.
+     */
+    public static String toJson(Bill bill) {
+        JSONObject json = new JSONObject(encode(bill));
+        if (bill.businessDetails != null) {
+            try {
+                json.put(KEY_BUSINESS_DETAILS,
+                        new JSONObject(encodeBusinessProfile(bill.businessDetails)));
+            } catch (JSONException e) {
+                throw new IllegalStateException(e); // Only thrown for a null key
+            }
+        }
+        return json.toString();
+    }
+
+    /**
+     * Read a bill written by {@link #toJson}.
+     *
+     * @throws JSONException            If the text is not a JSON object
+     * @throws IllegalArgumentException If the layout version is not supported
+     */
+    public static Bill fromJson(String billId, String text) throws JSONException {
+        Map<String, Object> data = toMap(new JSONObject(text));
+        Bill bill = decode(billId, data);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> business = (Map<String, Object>) data.get(KEY_BUSINESS_DETAILS);
+        if (business != null) {
+            bill.businessDetails = decodeBusinessProfile(business);
+        }
+        return bill;
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static Bill.BusinessDetails decodeBusinessProfile(Map<String, Object> data) {
+        return new Bill.BusinessDetails(
+                (String) data.get("name"),
+                (String) data.get("address"),
+                (String) data.get("phone"),
+                (String) data.get("email"),
+                (String) data.get("gstin"));
+    }
+
+    /**
+     * Plain maps, lists and values for a JSON object, as Firestore would return them.
+     */
+    private static Map<String, Object> toMap(JSONObject json) throws JSONException {
+        Map<String, Object> map = new HashMap<>(json.length() * 2);
+        for (Iterator<String> keys = json.keys(); keys.hasNext(); ) {
+            String key = keys.next();
+            map.put(key, fromJsonValue(json.get(key)));
+        }
+        return map;
+    }
+
+    private static Object fromJsonValue(Object value) throws JSONException {
+        if (value == JSONObject.NULL) {
+            return null;
+        }
+        if (value instanceof JSONObject) {
+            return toMap((JSONObject) value);
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                list.add(fromJsonValue(array.get(i)));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    private static long getLong(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
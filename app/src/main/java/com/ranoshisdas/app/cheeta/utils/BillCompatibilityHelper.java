@@ -1,7 +1,15 @@
 package com.ranoshisdas.app.cheeta.utils;
 
 import android.content.Context;
+
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillItem;
+import com.ranoshisdas.app.cheeta.models.Customer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Handles backward compatibility for bills created before Firebase integration.
@@ -9,6 +17,73 @@ import com.ranoshisdas.app.cheeta.models.Bill;
  */
 public class BillCompatibilityHelper {
 
+    /**
+     * Read a bill document written before {@link BillCodec} existed, with full field names
+     * and embedded customer, items and business details.
+     */
+    public static Bill fromLegacyDocument(DocumentSnapshot doc) {
+        Map<String, Object> data = doc.getData();
+        return data != null ? fromLegacyData(doc.getId(), data) : null;
+    }
+
+    /**
+     * Read a legacy bill document's fields. Missing fields keep their defaults, as they
+     * would with {@link DocumentSnapshot#toObject}.
+     */
+    public static Bill fromLegacyData(String billId, Map<String, Object> data) {
+        Bill bill = new Bill();
+        bill.billId = billId;
+        bill.billNumber = getString(data, "billNumber");
+        bill.billSequence = (int) getLong(data, "billSequence");
+        bill.billMonth = getString(data, "billMonth");
+        bill.timestamp = getLong(data, "timestamp");
+
+        Map<String, Object> customer = getMap(data, "customer");
+        if (customer != null) {
+            bill.customer = new Customer();
+            bill.customer.name = getString(customer, "name");
+            bill.customer.phone = getString(customer, "phone");
+            bill.customer.email = getString(customer, "email");
+        }
+
+        Object items = data.get("items");
+        if (items instanceof List) {
+            bill.items = new ArrayList<>(((List<?>) items).size());
+            for (Object value : (List<?>) items) {
+                if (!(value instanceof Map)) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> line = (Map<String, Object>) value;
+                BillItem item = new BillItem();
+                item.id = getString(line, "id");
+                item.name = getString(line, "name");
+                item.price = getDouble(line, "price");
+                item.quantity = (int) getLong(line, "quantity");
+                item.subtotal = getDouble(line, "subtotal");
+                bill.items.add(item);
+            }
+        }
+
+        bill.subtotal = getDouble(data, "subtotal");
+        bill.cgst = getDouble(data, "cgst");
+        bill.sgst = getDouble(data, "sgst");
+        bill.total = getDouble(data, "total");
+        bill.cgstRate = (float) getDouble(data, "cgstRate");
+        bill.sgstRate = (float) getDouble(data, "sgstRate");
+
+        Map<String, Object> business = getMap(data, "businessDetails");
+        if (business != null) {
+            bill.businessDetails = new Bill.BusinessDetails(
+                    getString(business, "name"),
+                    getString(business, "address"),
+                    getString(business, "phone"),
+                    getString(business, "email"),
+                    getString(business, "gstin"));
+        }
+        return bill;
+    }
+
     /**
      * Ensures bill has all required fields for PDF/Image generation.
      * Falls back to current settings if businessDetails is null (legacy bills).
@@ -85,12 +160,14 @@ public class BillCompatibilityHelper {
      */
     private static void calculateGSTAmounts(Bill bill) {
         if (bill.subtotal > 0) {
-            bill.cgst = (bill.subtotal * bill.cgstRate) / 100;
-            bill.sgst = (bill.subtotal * bill.sgstRate) / 100;
+            BillTotals totals = new BillTotals()
+                    .compute(Money.ofRupees(bill.subtotal), bill.cgstRate, bill.sgstRate);
+            bill.cgst = Money.toRupees(totals.cgst);
+            bill.sgst = Money.toRupees(totals.sgst);
 
             // Update total if needed
             if (bill.total == 0) {
-                bill.total = bill.subtotal + bill.cgst + bill.sgst;
+                bill.total = Money.toRupees(totals.total);
             }
         }
     }
@@ -101,22 +178,26 @@ public class BillCompatibilityHelper {
     private static void calculateSubtotal(Bill bill) {
         // Try to calculate from items first
         if (bill.items != null && !bill.items.isEmpty()) {
-            double sum = 0;
+            long sum = 0;
             for (com.ranoshisdas.app.cheeta.models.BillItem item : bill.items) {
-                sum += item.subtotal;
+                sum += Money.ofRupees(item.subtotal);
             }
             if (sum > 0) {
-                bill.subtotal = sum;
+                bill.subtotal = Money.toRupees(sum);
                 return;
             }
         }
 
         // Back-calculate from total if available
         if (bill.total > 0 && bill.cgstRate > 0 && bill.sgstRate > 0) {
-            double totalGSTRate = bill.cgstRate + bill.sgstRate;
-            bill.subtotal = bill.total / (1 + (totalGSTRate / 100));
-            bill.cgst = (bill.subtotal * bill.cgstRate) / 100;
-            bill.sgst = (bill.subtotal * bill.sgstRate) / 100;
+            long total = Money.ofRupees(bill.total);
+            long totalBasisPoints = 10000L + Money.basisPoints(bill.cgstRate) + Money.basisPoints(bill.sgstRate);
+            // Rounded to the nearest paisa; the taxes then follow the normal rules
+            long subtotal = (total * 10000L + totalBasisPoints / 2) / totalBasisPoints;
+            BillTotals totals = new BillTotals().compute(subtotal, bill.cgstRate, bill.sgstRate);
+            bill.subtotal = Money.toRupees(totals.subtotal);
+            bill.cgst = Money.toRupees(totals.cgst);
+            bill.sgst = Money.toRupees(totals.sgst);
         }
     }
 
@@ -142,4 +223,25 @@ public class BillCompatibilityHelper {
 
         return "Bill status unknown";
     }
-}
\ No newline at end of file
+
+    private static String getString(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static long getLong(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static double getDouble(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getMap(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+}
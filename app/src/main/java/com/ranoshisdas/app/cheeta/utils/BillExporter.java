@@ -0,0 +1,699 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.content.Context;
+import android.graphics.pdf.PdfDocument;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.ranoshisdas.app.cheeta.models.Bill;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports many bills at once, either merged into one PDF or as a ZIP of one PDF per bill.
+ *
+ * The export is a pipeline, so memory stays flat however many bills it covers. A
+ * coordinator thread reads bills from Firestore a page at a time and hands each one to a
+ * small pool of render workers. Finished renders are written to the output in bill order,
+ * and at most {@link #IN_FLIGHT_PER_WORKER} renders per worker are pending; the coordinator
+ * waits for the oldest before reading on.
+ *
+ * A merged PDF is built with {@link PdfDocument}, which keeps every finished page's
+ * drawing until the document is written out. Merged exports are therefore split into parts
+ * of about {@link #MAX_PAGES_PER_PART} pages, each written and released before the next
+ * begins.
+ *
+ * Listener callbacks run on the main thread. After {@link #cancel} no callback is made and
+ * partial output is deleted.
+ */
+public class BillExporter {
+
+    private static final String TAG = "BillExporter";
+
+    public static final int FORMAT_MERGED_PDF = 0;
+    public static final int FORMAT_ZIP = 1;
+
+    /** Total passed to {@link Listener#onExportProgress} when the bills could not be counted. */
+    public static final int UNKNOWN_TOTAL = -1;
+
+    private static final String EXPORT_DIR = "Cheeta/Exports";
+    // Earlier exports are kept this long for the app they were shared with to read them
+    private static final long EXPORT_TTL_MS = 60 * 60 * 1000L;
+
+    // Bills read per range query
+    private static final int FETCH_PAGE_SIZE = 50;
+    // Firestore's limit on values in a whereIn filter
+    private static final int IDS_PER_QUERY = 30;
+    private static final int MAX_WORKERS = 3;
+    private static final int IN_FLIGHT_PER_WORKER = 2;
+    private static final int MAX_PAGES_PER_PART = 1000;
+    private static final long PROGRESS_INTERVAL_MS = 200;
+    // The count is only for the progress bar, so the export does not wait long for it
+    private static final long COUNT_TIMEOUT_MS = 5000;
+
+    private final Context context;
+    private final String userId;
+    private final int format;
+    // Either the bills to export, in order, or a timestamp range where 0 leaves a side open
+    private final List<String> billIds;
+    private final long fromDate;
+    private final long toDate;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private ExecutorService workers;
+    private Thread coordinator;
+
+    // Business profiles seen during this export, by ID; coordinator thread only
+    private final Map<String, Bill.BusinessDetails> profiles = new HashMap<>();
+
+    public interface Listener {
+        /**
+         * @param total Bills to export, or {@link #UNKNOWN_TOTAL} if they could not be
+         *              counted, e.g. while offline
+         */
+        void onExportProgress(int done, int total);
+
+        /**
+         * @param files   Exported files; empty if no bill could be exported
+         * @param skipped Bills left out because they were missing or incomplete
+         */
+        void onExportComplete(List<File> files, int skipped);
+
+        void onExportFailed(Exception e);
+    }
+
+    /**
+     * Export the given bills, in the given order.
+     */
+    public static BillExporter forBills(Context context, List<String> billIds, int format) {
+        return new BillExporter(context, format, new ArrayList<>(billIds), 0, 0);
+    }
+
+    /**
+     * Export every bill created in a range, oldest first.
+     *
+     * @param fromDate Earliest timestamp, or 0 for no lower bound
+     * @param toDate   Latest timestamp, or 0 for no upper bound
+     */
+    public static BillExporter forDateRange(Context context, long fromDate, long toDate, int format) {
+        return new BillExporter(context, format, null, fromDate, toDate);
+    }
+
+    private BillExporter(Context context, int format, List<String> billIds, long fromDate, long toDate) {
+        this.context = context.getApplicationContext();
+        this.userId = FirebaseUtil.auth().getCurrentUser().getUid();
+        this.format = format;
+        this.billIds = billIds;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
+
+    /**
+     * Start exporting in the background. An exporter runs once.
+     */
+    public void start(Listener listener) {
+        workers = Executors.newFixedThreadPool(workerCount());
+        coordinator = new Thread(() -> run(listener), TAG);
+        coordinator.start();
+    }
+
+    /**
+     * Stop the export; renders in progress are abandoned and partial files deleted.
+     */
+    public void cancel() {
+        if (cancelled.getAndSet(true)) {
+            return;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        if (coordinator != null) {
+            // Wakes the coordinator from a Firestore read or a pending render
+            coordinator.interrupt();
+        }
+    }
+
+    /**
+     * Delete all exported files, e.g. when the user signs out.
+     */
+    public static void clear(Context context) {
+        deleteExports(getExportDir(context), Long.MAX_VALUE);
+    }
+
+    /* =========================
+       PIPELINE
+       ========================= */
+
+    private void run(Listener listener) {
+        File dir = getExportDir(context);
+        deleteExports(dir, EXPORT_TTL_MS);
+        String baseName = "Invoices_"
+                + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        Sink<?> sink = format == FORMAT_ZIP
+                ? new ZipSink(dir, baseName)
+                : new MergedPdfSink(dir, baseName);
+
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            Progress progress = new Progress(listener, countBills());
+            progress.report(true);
+            int skipped = export(sink, progress);
+            List<File> files = sink.finish();
+            progress.report(true);
+            post(() -> listener.onExportComplete(files, skipped));
+        } catch (Exception e) {
+            sink.abort();
+            if (!cancelled.get()) {
+                Log.e(TAG, "Export failed", e);
+                post(() -> listener.onExportFailed(e));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Read, render and write every bill.
+     *
+     * @return Number of bills skipped
+     */
+    private <T> int export(Sink<T> sink, Progress progress) throws Exception {
+        int skipped = 0;
+        int window = workerCount() * IN_FLIGHT_PER_WORKER;
+        ArrayDeque<Future<T>> pending = new ArrayDeque<>(window);
+
+        BillSource source = billIds != null ? new IdSource() : new RangeSource();
+        List<Bill> page;
+        while ((page = source.next()) != null) {
+            for (Bill bill : page) {
+                checkCancelled();
+                if (!BillCompatibilityHelper.ensureBillCompatibility(context, bill)) {
+                    skipped++;
+                    progress.add(1);
+                    continue;
+                }
+                if (pending.size() >= window) {
+                    sink.write(await(pending.poll()));
+                    progress.add(1);
+                }
+                pending.add(workers.submit(() -> sink.render(bill)));
+            }
+            // Bills the source could not read or resolve
+            int unreadable = source.takeSkipped();
+            skipped += unreadable;
+            progress.add(unreadable);
+        }
+        while (!pending.isEmpty()) {
+            checkCancelled();
+            sink.write(await(pending.poll()));
+            progress.add(1);
+        }
+        return skipped;
+    }
+
+    private <T> T await(Future<T> render) throws Exception {
+        try {
+            return render.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private void checkCancelled() throws InterruptedException {
+        if (cancelled.get() || Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Export cancelled");
+        }
+    }
+
+    private int workerCount() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(MAX_WORKERS, cores - 1));
+    }
+
+    /**
+     * Posts progress to the listener, at most every {@link #PROGRESS_INTERVAL_MS}.
+     */
+    private class Progress {
+        private final Listener listener;
+        private final int total;
+        private int done = 0;
+        private long lastReported = 0;
+
+        Progress(Listener listener, int total) {
+            this.listener = listener;
+            this.total = total;
+        }
+
+        void add(int bills) {
+            done += bills;
+            report(false);
+        }
+
+        void report(boolean force) {
+            long now = SystemClock.uptimeMillis();
+            if (!force && now - lastReported < PROGRESS_INTERVAL_MS) {
+                return;
+            }
+            lastReported = now;
+            // Bills added after counting can push done past the total
+            int shownTotal = total == UNKNOWN_TOTAL ? UNKNOWN_TOTAL : Math.max(total, done);
+            int shownDone = done;
+            post(() -> listener.onExportProgress(shownDone, shownTotal));
+        }
+    }
+
+    private void post(Runnable callback) {
+        mainHandler.post(() -> {
+            if (!cancelled.get()) {
+                callback.run();
+            }
+        });
+    }
+
+    /* =========================
+       READING BILLS
+       ========================= */
+
+    private CollectionReference bills() {
+        return FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection("bills");
+    }
+
+    private Query rangeQuery() {
+        Query query = bills().orderBy("timestamp", Query.Direction.ASCENDING);
+        if (fromDate > 0) {
+            query = query.whereGreaterThanOrEqualTo("timestamp", fromDate);
+        }
+        if (toDate > 0) {
+            query = query.whereLessThanOrEqualTo("timestamp", toDate);
+        }
+        return query;
+    }
+
+    /**
+     * @return Bills to export, or {@link #UNKNOWN_TOTAL} if the server cannot be reached.
+     *         The bills themselves are still read, from the cache if need be
+     */
+    private int countBills() throws InterruptedException {
+        if (billIds != null) {
+            return billIds.size();
+        }
+        try {
+            // Counted on the server without reading the bills; there is no offline count
+            return (int) Tasks.await(rangeQuery().count().get(AggregateSource.SERVER),
+                    COUNT_TIMEOUT_MS, TimeUnit.MILLISECONDS).getCount();
+        } catch (ExecutionException | TimeoutException e) {
+            Log.w(TAG, "Could not count bills, exporting without a total", e);
+            return UNKNOWN_TOTAL;
+        }
+    }
+
+    /**
+     * Complete bill from a document, or null if it cannot be read or its business
+     * details are gone.
+     */
+    private Bill readBill(DocumentSnapshot doc) throws Exception {
+        Bill bill;
+        try {
+            bill = BillCodec.decode(doc);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Skipping unreadable bill " + doc.getId(), e);
+            return null;
+        }
+        String profileId = BillCodec.getBusinessProfileId(doc);
+        if (bill == null || profileId == null) {
+            return bill;
+        }
+
+        Bill.BusinessDetails details = profiles.get(profileId);
+        if (details == null) {
+            DocumentSnapshot profile = Tasks.await(FirebaseUtil.db().collection("users")
+                    .document(userId)
+                    .collection("business_profiles")
+                    .document(profileId)
+                    .get());
+            if (!profile.exists()) {
+                Log.w(TAG, "Skipping bill " + doc.getId() + " without business details");
+                return null;
+            }
+            details = BillCodec.decodeBusinessProfile(profile);
+            profiles.put(profileId, details);
+        }
+        bill.businessDetails = details;
+        return bill;
+    }
+
+    private abstract class BillSource {
+        private int skipped = 0;
+
+        /**
+         * @return The next bills in export order, or null when there are no more
+         */
+        abstract List<Bill> next() throws Exception;
+
+        void addBill(List<Bill> page, DocumentSnapshot doc) throws Exception {
+            Bill bill = doc != null && doc.exists() ? readBill(doc) : null;
+            if (bill != null) {
+                page.add(bill);
+            } else {
+                skipped++;
+            }
+        }
+
+        int takeSkipped() {
+            int count = skipped;
+            skipped = 0;
+            return count;
+        }
+    }
+
+    private class RangeSource extends BillSource {
+        private DocumentSnapshot last;
+        private boolean exhausted = false;
+
+        @Override
+        List<Bill> next() throws Exception {
+            if (exhausted) {
+                return null;
+            }
+            Query query = rangeQuery();
+            if (last != null) {
+                query = query.startAfter(last);
+            }
+            QuerySnapshot snapshot = Tasks.await(query.limit(FETCH_PAGE_SIZE).get());
+            List<Bill> page = new ArrayList<>(snapshot.size());
+            for (QueryDocumentSnapshot doc : snapshot) {
+                addBill(page, doc);
+                last = doc;
+            }
+            exhausted = snapshot.size() < FETCH_PAGE_SIZE;
+            return page;
+        }
+    }
+
+    private class IdSource extends BillSource {
+        private int position = 0;
+
+        @Override
+        List<Bill> next() throws Exception {
+            if (position >= billIds.size()) {
+                return null;
+            }
+            List<String> chunk = billIds.subList(position,
+                    Math.min(position + IDS_PER_QUERY, billIds.size()));
+            position += chunk.size();
+
+            QuerySnapshot snapshot = Tasks.await(
+                    bills().whereIn(FieldPath.documentId(), chunk).get());
+            // Results come back in ID order, not the order asked for
+            Map<String, DocumentSnapshot> byId = new HashMap<>();
+            for (QueryDocumentSnapshot doc : snapshot) {
+                byId.put(doc.getId(), doc);
+            }
+            List<Bill> page = new ArrayList<>(chunk.size());
+            for (String billId : chunk) {
+                addBill(page, byId.get(billId));
+            }
+            return page;
+        }
+    }
+
+    /* =========================
+       WRITING OUTPUT
+       ========================= */
+
+    /**
+     * Output format. {@link #render} runs on the workers, everything else on the
+     * coordinator.
+     */
+    private interface Sink<T> {
+        T render(Bill bill) throws IOException;
+
+        /** Add a rendered bill to the output; called in bill order. */
+        void write(T rendered) throws IOException;
+
+        List<File> finish() throws IOException;
+
+        /** Delete everything written so far. */
+        void abort();
+    }
+
+    /**
+     * Workers lay the bills out, which is most of the work; the coordinator draws the
+     * layouts into the current part.
+     */
+    private static class MergedPdfSink implements Sink<InvoiceLayout> {
+        private final File dir;
+        private final String baseName;
+        // Layouts keep only text and positions, so the coordinator can draw them with
+        // its own paints
+        private final InvoiceLayout.Styles styles = new InvoiceLayout.Styles();
+        private final List<File> parts = new ArrayList<>();
+        private PdfDocument document;
+        private int pagesInPart = 0;
+
+        MergedPdfSink(File dir, String baseName) {
+            this.dir = dir;
+            this.baseName = baseName;
+        }
+
+        @Override
+        public InvoiceLayout render(Bill bill) {
+            return InvoiceLayout.build(bill, new InvoiceLayout.Styles());
+        }
+
+        @Override
+        public void write(InvoiceLayout layout) throws IOException {
+            if (document != null && pagesInPart >= MAX_PAGES_PER_PART) {
+                writePart();
+            }
+            if (document == null) {
+                document = new PdfDocument();
+                pagesInPart = 0;
+            }
+            pagesInPart += PdfUtils.addPages(document, layout, styles);
+        }
+
+        @Override
+        public List<File> finish() throws IOException {
+            if (document != null) {
+                writePart();
+            }
+            // Parts are only numbered when there is more than one
+            List<File> files = new ArrayList<>(parts.size());
+            for (int i = 0; i < parts.size(); i++) {
+                String name = parts.size() == 1
+                        ? baseName + ".pdf"
+                        : baseName + "_part" + (i + 1) + ".pdf";
+                File file = new File(dir, name);
+                if (!parts.get(i).renameTo(file)) {
+                    throw new IOException("Cannot move export into " + file);
+                }
+                files.add(file);
+            }
+            parts.clear();
+            return files;
+        }
+
+        @Override
+        public void abort() {
+            if (document != null) {
+                document.close();
+                document = null;
+            }
+            for (File part : parts) {
+                part.delete();
+            }
+        }
+
+        private void writePart() throws IOException {
+            File part = new File(dir, baseName + "." + (parts.size() + 1) + ".part");
+            // Added first so abort() also removes a part that failed halfway
+            parts.add(part);
+            try (FileOutputStream out = new FileOutputStream(part)) {
+                document.writeTo(out);
+            } finally {
+                // Releases the recorded pages
+                document.close();
+                document = null;
+            }
+        }
+    }
+
+    /**
+     * Workers write each bill's PDF to a temporary file, which the coordinator copies
+     * into the archive and deletes.
+     */
+    private static class ZipSink implements Sink<ZipSink.Entry> {
+        private final File dir;
+        private final String baseName;
+        private final File tempDir;
+        private final File partial;
+        private final Set<String> names = new HashSet<>();
+        private final byte[] buffer = new byte[64 * 1024];
+        private ZipOutputStream zip;
+        private int entries = 0;
+
+        static class Entry {
+            final String name;
+            final File file;
+
+            Entry(String name, File file) {
+                this.name = name;
+                this.file = file;
+            }
+        }
+
+        ZipSink(File dir, String baseName) {
+            this.dir = dir;
+            this.baseName = baseName;
+            this.tempDir = new File(dir, baseName + ".tmp");
+            this.partial = new File(dir, baseName + ".zip.part");
+        }
+
+        @Override
+        public Entry render(Bill bill) throws IOException {
+            String name = "Invoice_" + (bill.billNumber != null && !bill.billNumber.isEmpty()
+                    ? bill.billNumber : bill.billId) + ".pdf";
+            File file = new File(tempDir, bill.billId + ".pdf");
+            // Safe to race between workers; only the first call creates it
+            tempDir.mkdirs();
+            try {
+                PdfUtils.writeBillPdf(bill, file);
+            } catch (IOException | RuntimeException e) {
+                file.delete();
+                throw e;
+            }
+            return new Entry(name, file);
+        }
+
+        @Override
+        public void write(Entry entry) throws IOException {
+            if (zip == null) {
+                zip = new ZipOutputStream(new FileOutputStream(partial));
+                // PDF content is already compressed
+                zip.setLevel(Deflater.BEST_SPEED);
+            }
+            String name = entry.name;
+            if (!names.add(name)) {
+                name = name.substring(0, name.length() - 4) + "_" + entry.file.getName();
+                names.add(name);
+            }
+            zip.putNextEntry(new ZipEntry(name));
+            try (InputStream in = new FileInputStream(entry.file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    zip.write(buffer, 0, read);
+                }
+            } finally {
+                entry.file.delete();
+            }
+            zip.closeEntry();
+            entries++;
+        }
+
+        @Override
+        public List<File> finish() throws IOException {
+            deleteDir(tempDir);
+            if (zip == null) {
+                return Collections.emptyList();
+            }
+            zip.close();
+            zip = null;
+            File file = new File(dir, baseName + ".zip");
+            if (!partial.renameTo(file)) {
+                throw new IOException("Cannot move export into " + file);
+            }
+            return Collections.singletonList(file);
+        }
+
+        @Override
+        public void abort() {
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (IOException ignored) {
+                }
+                zip = null;
+            }
+            partial.delete();
+            deleteDir(tempDir);
+        }
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static File getExportDir(Context context) {
+        // External files, like cached invoices, so the FileProvider can share them
+        return new File(context.getExternalFilesDir(null), EXPORT_DIR);
+    }
+
+    /**
+     * Delete exports last modified more than {@code maxAgeMs} ago, with any leftovers
+     * of an export that was interrupted.
+     */
+    private static void deleteExports(File dir, long maxAgeMs) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (maxAgeMs == Long.MAX_VALUE || now - file.lastModified() > maxAgeMs) {
+                deleteDir(file);
+            }
+        }
+    }
+
+    private static void deleteDir(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        file.delete();
+    }
+}
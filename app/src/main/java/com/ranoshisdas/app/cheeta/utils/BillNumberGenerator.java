@@ -58,6 +58,15 @@ public class BillNumberGenerator {
         }
     }
 
+    /**
+     * Placeholder shown for a bill saved offline before it has a sequence number
+     * @param billId Client-generated bill document ID
+     * @return Provisional bill number (e.g., "PENDING-7F3K9Q")
+     */
+    public static String formatProvisionalNumber(String billId) {
+        return "PENDING-" + billId.substring(0, Math.min(6, billId.length())).toUpperCase(Locale.US);
+    }
+
     /**
      * Parse bill month from bill number
      * @param billNumber Bill number (e.g., "JAN-26-001")
@@ -0,0 +1,457 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillItem;
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Durable queue of bills saved on this device but not yet written to Firestore.
+ *
+ * Saving a bill only inserts it here, so checkout never waits for the network. Each bill
+ * carries a client-generated document ID, and writes use that ID, so sending a bill twice,
+ * e.g. after a crash between the write and its removal from the queue, just rewrites the
+ * same documents.
+ *
+ * Stock decrements are not safe to repeat, so they are applied once per bill. Rows are
+ * marked sent before their batch is committed, and the batch also writes a marker at
+ * users/{uid}/stock_applied/{billId}. A sent row comes back only if its commit was not
+ * confirmed: the app died first, or the commit is still waiting in Firestore's queue while
+ * offline. Such a bill is sent again without its stock if the marker exists, which includes
+ * a marker still pending locally. If the marker cannot be read yet, the bill waits.
+ *
+ * A bill saved while the device has no leased sequence number left gets sequence 0 and a
+ * provisional number. The final number is leased and stored in the queue before the bill
+ * is written, so Firestore only ever sees final numbers.
+ *
+ * The queue is flushed oldest first, up to {@link #MAX_BILLS_PER_BATCH} bills per batched
+ * write together with their stock decrements, customer directory entries and business
+ * profiles ({@link BillCodec}). Flushes run after each save, on start and whenever a network
+ * becomes available. Unlike {@link BillStore} this database is not a cache and is never
+ * dropped. Queued bills are stored as {@link BillCodec#toJson} JSON, so they stay readable
+ * whatever later happens to the model classes.
+ * Call {@link #enqueue} and {@link #flush} on the main thread.
+ */
+public class BillOutbox extends SQLiteOpenHelper {
+
+    private static final String TAG = "BillOutbox";
+
+    private static final String DATABASE_NAME = "cheeta_outbox.db";
+    private static final int DATABASE_VERSION = 1;
+    private static final String TABLE_OUTBOX = "outbox";
+
+    private static final int MAX_BILLS_PER_BATCH = 100;
+    // Firestore's limit: each bill is two writes, plus one per new item and customer
+    private static final int MAX_WRITES_PER_BATCH = 500;
+
+    private static BillOutbox instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean flushing = false;
+    private boolean flushRequested = false;
+
+    /**
+     * A queued bill. {@code bill.billId} is its document ID.
+     */
+    public static class Entry {
+        public final Bill bill;
+        // Included in a commit that was never confirmed
+        final boolean sent;
+        // Stock for this bill already decremented, or queued to be, by an earlier commit
+        boolean stockApplied = false;
+
+        Entry(Bill bill, boolean sent) {
+            this.bill = bill;
+            this.sent = sent;
+        }
+
+        public boolean isNumbered() {
+            return bill.billSequence > 0;
+        }
+    }
+
+    public static synchronized BillOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new BillOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BillOutbox(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+
+        ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+        if (connectivity != null) {
+            connectivity.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    mainHandler.post(() -> flush());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + "bill_id TEXT PRIMARY KEY, "
+                + "user_id TEXT NOT NULL, "
+                + "created INTEGER NOT NULL, "
+                + "payload TEXT NOT NULL, "
+                + "sent INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX idx_outbox_user_created ON " + TABLE_OUTBOX
+                + " (user_id, created)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Queued bills exist nowhere else; later versions must migrate them, never drop
+    }
+
+    // ========== Queue ==========
+
+    /**
+     * Queue a bill for the user and start sending it.
+     *
+     * @param bill Complete bill; its ID is set to a new document ID if missing, and its
+     *             number is formatted from billSequence, or provisional if that is 0
+     * @return Completes on the main thread once the bill is on disk
+     */
+    public Task<Bill> enqueue(String userId, Bill bill) {
+        if (bill.billId == null) {
+            bill.billId = bills(userId).document().getId();
+        }
+        bill.billNumber = bill.billSequence > 0
+                ? BillNumberGenerator.formatBillNumber(bill.billMonth, bill.billSequence)
+                : BillNumberGenerator.formatProvisionalNumber(bill.billId);
+        // Encoded now, so later changes to the caller's objects cannot leak in
+        String payload = BillCodec.toJson(bill);
+        long created = System.currentTimeMillis();
+
+        return Tasks.call(BillSync.executor(), () -> {
+            ContentValues values = new ContentValues();
+            values.put("bill_id", bill.billId);
+            values.put("user_id", userId);
+            values.put("created", created);
+            values.put("payload", payload);
+            getWritableDatabase().insertOrThrow(TABLE_OUTBOX, null, values);
+            return bill;
+        }).addOnSuccessListener(saved -> flush());
+    }
+
+    /**
+     * Send queued bills for the signed-in user. Safe to call at any time; a call while a
+     * flush is running makes it run again afterwards.
+     */
+    public void flush() {
+        FirebaseUser user = FirebaseUtil.auth().getCurrentUser();
+        if (user == null) {
+            return;
+        }
+        if (flushing) {
+            flushRequested = true;
+            return;
+        }
+        flushing = true;
+        flushRequested = false;
+
+        String userId = user.getUid();
+        Tasks.call(BillSync.executor(), () -> loadPending(userId, MAX_BILLS_PER_BATCH))
+                .onSuccessTask(entries -> assignNumbers(userId, entries, 0))
+                .onSuccessTask(entries -> checkStockApplied(userId, entries, 0))
+                .onSuccessTask(entries -> send(userId, entries))
+                .addOnCompleteListener(task -> {
+                    flushing = false;
+                    if (task.getException() instanceof CatalogNotLoadedException) {
+                        // Sent once the inventory arrives. If it never does, e.g. the
+                        // listener is refused, nothing polls; saves and reconnects still
+                        // try again
+                        ItemCatalog.getInstance().whenLoaded(this::flush);
+                        return;
+                    }
+                    if (!task.isSuccessful()) {
+                        // Retried on the next save or when a network becomes available
+                        Log.w(TAG, "Outbox flush stopped", task.getException());
+                        return;
+                    }
+                    // Keep going until a pass finds nothing left to send
+                    if (flushRequested || task.getResult() > 0) {
+                        flush();
+                    }
+                });
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    /**
+     * Lease final numbers for provisional bills from {@code index} on, storing each one
+     * before moving on. If a lease fails, e.g. offline, only the bills before that one
+     * are sent.
+     */
+    private Task<List<Entry>> assignNumbers(String userId, List<Entry> entries, int index) {
+        while (index < entries.size() && entries.get(index).isNumbered()) {
+            index++;
+        }
+        if (index == entries.size()) {
+            return Tasks.forResult(entries);
+        }
+
+        int current = index;
+        Bill bill = entries.get(current).bill;
+        return BillSequenceAllocator.getInstance()
+                .next(context, userId, bill.billMonth)
+                .onSuccessTask(sequence -> {
+                    bill.billSequence = sequence;
+                    bill.billNumber = BillNumberGenerator.formatBillNumber(bill.billMonth, sequence);
+                    String payload = BillCodec.toJson(bill);
+                    return Tasks.call(BillSync.executor(), () -> {
+                        ContentValues values = new ContentValues();
+                        values.put("payload", payload);
+                        getWritableDatabase().update(TABLE_OUTBOX, values,
+                                "bill_id = ?", new String[]{bill.billId});
+                        return null;
+                    });
+                })
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.w(TAG, "Bill numbers not assigned yet", task.getException());
+                        return Tasks.forResult(entries.subList(0, current));
+                    }
+                    return assignNumbers(userId, entries, current + 1);
+                });
+    }
+
+    /**
+     * For bills already included in an unconfirmed commit, from {@code index} on, find out
+     * whether that commit's stock decrement went through. If a marker cannot be read, e.g.
+     * offline and not cached, only the bills before that one are sent.
+     */
+    private Task<List<Entry>> checkStockApplied(String userId, List<Entry> entries, int index) {
+        while (index < entries.size() && !entries.get(index).sent) {
+            index++;
+        }
+        if (index == entries.size()) {
+            return Tasks.forResult(entries);
+        }
+
+        int current = index;
+        Entry entry = entries.get(current);
+        // Reads pending local writes too, so a commit still queued offline counts
+        return stockApplied(userId).document(entry.bill.billId).get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.w(TAG, "Stock state of bill " + entry.bill.billNumber
+                                + " unknown; sending it later", task.getException());
+                        return Tasks.forResult(entries.subList(0, current));
+                    }
+                    entry.stockApplied = task.getResult().exists();
+                    return checkStockApplied(userId, entries, current + 1);
+                });
+    }
+
+    /**
+     * Write bills, their summaries, their customers and the stock they sold in one batch,
+     * then drop them from the queue. Stock goes down by one increment per distinct item, so concurrent
+     * sales on several terminals never overwrite each other, and each bill whose stock is
+     * included gets its stock_applied marker. The rows are marked sent before the commit.
+     * Bills are added while the batch stays within Firestore's write limit.
+     *
+     * @return Number of bills sent
+     */
+    private Task<Integer> send(String userId, List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return Tasks.forResult(0);
+        }
+        // Items deleted from inventory must be skipped, since updating them would fail
+        // the whole batch
+        ItemCatalog catalog = ItemCatalog.forCurrentUser();
+        if (!catalog.isLoaded()) {
+            return Tasks.forException(new CatalogNotLoadedException());
+        }
+
+        WriteBatch batch = FirebaseUtil.db().batch();
+        List<String> billIds = new ArrayList<>();
+        Map<String, Long> soldByItemId = new HashMap<>();
+        Map<String, Bill> latestBillByCustomer = new HashMap<>();
+        Map<String, Bill.BusinessDetails> profilesById = new HashMap<>();
+        int writes = 0;
+        for (Entry entry : entries) {
+            Bill bill = entry.bill;
+            boolean applyStock = !entry.stockApplied;
+            Set<String> newItemIds = new HashSet<>();
+            if (applyStock) {
+                for (BillItem line : bill.items) {
+                    if (line.id != null && catalog.getItem(line.id) != null
+                            && !soldByItemId.containsKey(line.id)) {
+                        newItemIds.add(line.id);
+                    }
+                }
+            }
+            String customerKey = bill.customer != null
+                    ? CustomerDirectory.normalizePhone(bill.customer.phone) : null;
+            boolean newCustomer = customerKey != null && !latestBillByCustomer.containsKey(customerKey);
+            String profileId = bill.businessDetails != null
+                    ? BillCodec.businessProfileId(bill.businessDetails) : null;
+            boolean newProfile = profileId != null && !profilesById.containsKey(profileId);
+
+            int billWrites = 2 + (applyStock ? 1 + newItemIds.size() : 0)
+                    + (newCustomer ? 1 : 0) + (newProfile ? 1 : 0);
+            if (!billIds.isEmpty() && writes + billWrites > MAX_WRITES_PER_BATCH) {
+                break;
+            }
+            writes += billWrites;
+
+            batch.set(bills(userId).document(bill.billId), BillCodec.encode(bill));
+            batch.set(BillSync.billIndex(userId).document(bill.billId),
+                    BillSync.indexEntry(BillSummary.fromBill(bill)));
+            if (applyStock) {
+                for (BillItem line : bill.items) {
+                    if (line.id == null) {
+                        continue;
+                    }
+                    if (catalog.getItem(line.id) != null) {
+                        soldByItemId.merge(line.id, (long) line.quantity, Long::sum);
+                    } else {
+                        Log.w(TAG, "Item " + line.id + " (" + line.name + ") on bill "
+                                + bill.billNumber + " is no longer in inventory; "
+                                + line.quantity + " sold not taken from stock");
+                    }
+                }
+                batch.set(stockApplied(userId).document(bill.billId),
+                        Collections.singletonMap("timestamp", bill.timestamp));
+            }
+            if (customerKey != null) {
+                latestBillByCustomer.put(customerKey, bill); // Entries are oldest first
+            }
+            if (newProfile) {
+                profilesById.put(profileId, bill.businessDetails);
+            }
+            billIds.add(bill.billId);
+        }
+
+        // Directory entry per customer, from their latest bill in this batch
+        for (Map.Entry<String, Bill> latest : latestBillByCustomer.entrySet()) {
+            Bill bill = latest.getValue();
+            batch.set(customers(userId).document(latest.getKey()),
+                    CustomerDirectory.toUpsert(bill.customer, bill.timestamp), SetOptions.merge());
+        }
+
+        // Business details the bills refer to; rewriting an existing profile changes nothing
+        for (Map.Entry<String, Bill.BusinessDetails> profile : profilesById.entrySet()) {
+            batch.set(businessProfiles(userId).document(profile.getKey()),
+                    BillCodec.encodeBusinessProfile(profile.getValue()));
+        }
+
+        for (Map.Entry<String, Long> sold : soldByItemId.entrySet()) {
+            batch.update(items(userId).document(sold.getKey()),
+                    "stock", FieldValue.increment(-sold.getValue()));
+        }
+
+        // Marked first, so a resend after an unconfirmed commit never repeats its stock
+        return Tasks.call(BillSync.executor(), () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                ContentValues values = new ContentValues();
+                values.put("sent", 1);
+                for (String billId : billIds) {
+                    db.update(TABLE_OUTBOX, values, "bill_id = ?", new String[]{billId});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return null;
+        }).onSuccessTask(marked -> batch.commit()).onSuccessTask(v -> Tasks.call(BillSync.executor(), () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (String billId : billIds) {
+                    db.delete(TABLE_OUTBOX, "bill_id = ?", new String[]{billId});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return billIds.size();
+        }));
+    }
+
+    private List<Entry> loadPending(String userId, int limit) {
+        List<Entry> entries = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().rawQuery(
+                "SELECT bill_id, payload, sent FROM " + TABLE_OUTBOX
+                        + " WHERE user_id = ? ORDER BY created, rowid LIMIT " + limit,
+                new String[]{userId})) {
+            while (c.moveToNext()) {
+                try {
+                    entries.add(new Entry(BillCodec.fromJson(c.getString(0), c.getString(1)),
+                            c.getInt(2) != 0));
+                } catch (JSONException | RuntimeException e) {
+                    // Kept for an app version that can read it; never dropped
+                    Log.e(TAG, "Skipping unreadable queued bill " + c.getString(0), e);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static CollectionReference bills(String userId) {
+        return FirebaseUtil.db().collection("users").document(userId).collection("bills");
+    }
+
+    private static CollectionReference businessProfiles(String userId) {
+        return FirebaseUtil.db().collection("users").document(userId).collection("business_profiles");
+    }
+
+    private static CollectionReference customers(String userId) {
+        return FirebaseUtil.db().collection("users").document(userId).collection("customers");
+    }
+
+    private static CollectionReference stockApplied(String userId) {
+        return FirebaseUtil.db().collection("users").document(userId).collection("stock_applied");
+    }
+
+    private static CollectionReference items(String userId) {
+        return FirebaseUtil.db().collection("users").document(userId).collection("items");
+    }
+
+    private static class CatalogNotLoadedException extends IllegalStateException {
+        CatalogNotLoadedException() {
+            super("Inventory not loaded yet");
+        }
+    }
+}
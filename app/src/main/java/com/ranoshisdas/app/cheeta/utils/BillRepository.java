@@ -0,0 +1,153 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.util.LruCache;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.ranoshisdas.app.cheeta.models.Bill;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide access to full bills by ID.
+ *
+ * Screens pass only the bill ID between each other and read the bill from here. Recently
+ * opened bills are kept in an LRU cache; a miss, e.g. after the process was killed and a
+ * screen restored, costs one Firestore document read.
+ *
+ * Bills stored by {@link BillCodec} refer to their business details by profile ID. The
+ * profile is read once per process and attached before a bill is handed out, so callers
+ * always get complete bills.
+ */
+public class BillRepository {
+
+    private static final int CACHE_SIZE = 32;
+
+    private static BillRepository instance;
+
+    private final LruCache<String, Bill> cache = new LruCache<>(CACHE_SIZE);
+    // Profiles are immutable (their ID is a hash of the content) and few, so never evicted
+    private final Map<String, Bill.BusinessDetails> profiles = new HashMap<>();
+
+    public interface OnBillLoadedListener {
+        void onBillLoaded(Bill bill);
+
+        void onBillLoadFailed(Exception e);
+    }
+
+    public static synchronized BillRepository getInstance() {
+        if (instance == null) {
+            instance = new BillRepository();
+        }
+        return instance;
+    }
+
+    private BillRepository() {}
+
+    /**
+     * @return The cached bill, or null if it has to be loaded
+     */
+    public Bill getCached(String billId) {
+        return cache.get(billId);
+    }
+
+    public void put(Bill bill) {
+        if (bill != null && bill.billId != null) {
+            cache.put(bill.billId, bill);
+        }
+    }
+
+    /**
+     * Drop a bill that changed or was deleted so the next load reads it again.
+     */
+    public void invalidate(String billId) {
+        cache.remove(billId);
+    }
+
+    /**
+     * Remove all cached bills, e.g. when the user signs out.
+     */
+    public void clear() {
+        cache.evictAll();
+        profiles.clear();
+    }
+
+    /**
+     * Get a bill from the cache, or fetch it from users/{uid}/bills/{billId}.
+     * Cache hits call the listener immediately; fetches call it on the main thread.
+     */
+    public void load(String billId, OnBillLoadedListener listener) {
+        Bill cached = cache.get(billId);
+        if (cached != null) {
+            listener.onBillLoaded(cached);
+            return;
+        }
+
+        String userId = FirebaseUtil.auth().getCurrentUser().getUid();
+        FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection("bills")
+                .document(billId)
+                .get()
+                .addOnSuccessListener(doc -> {
+                    Bill bill;
+                    try {
+                        bill = doc.exists() ? BillCodec.decode(doc) : null;
+                    } catch (RuntimeException e) {
+                        listener.onBillLoadFailed(e);
+                        return;
+                    }
+                    if (bill == null) {
+                        listener.onBillLoadFailed(new IllegalStateException("Bill not found"));
+                        return;
+                    }
+                    attachBusinessDetails(userId, bill, BillCodec.getBusinessProfileId(doc), listener);
+                })
+                .addOnFailureListener(listener::onBillLoadFailed);
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private void attachBusinessDetails(String userId, Bill bill, String profileId,
+                                       OnBillLoadedListener listener) {
+        if (profileId == null) {
+            deliver(bill, listener);
+            return;
+        }
+        Bill.BusinessDetails known = profiles.get(profileId);
+        if (known != null) {
+            bill.businessDetails = known;
+            deliver(bill, listener);
+            return;
+        }
+
+        profileRef(userId, profileId).get()
+                .addOnSuccessListener(doc -> {
+                    if (!doc.exists()) {
+                        // Without it the bill would silently show today's settings instead
+                        listener.onBillLoadFailed(
+                                new IllegalStateException("Business details not found"));
+                        return;
+                    }
+                    Bill.BusinessDetails details = BillCodec.decodeBusinessProfile(doc);
+                    profiles.put(profileId, details);
+                    bill.businessDetails = details;
+                    deliver(bill, listener);
+                })
+                .addOnFailureListener(listener::onBillLoadFailed);
+    }
+
+    private void deliver(Bill bill, OnBillLoadedListener listener) {
+        put(bill);
+        listener.onBillLoaded(bill);
+    }
+
+    private static DocumentReference profileRef(String userId, String profileId) {
+        return FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection("business_profiles")
+                .document(profileId);
+    }
+}
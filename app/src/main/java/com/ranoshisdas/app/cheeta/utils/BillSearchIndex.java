@@ -0,0 +1,340 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * In-memory trigram index over bill number, customer name and customer phone.
+ *
+ * Every bill is stored once as a lowercase search key, see {@link #searchKey}, and each
+ * distinct trigram of that key points to the bills containing it. A query is answered by
+ * walking the shortest posting list among the query's trigrams and verifying each candidate
+ * against its precomputed key, so no strings are created per bill while searching.
+ * Queries shorter than three characters match most of the history anyway and are verified
+ * directly against the precomputed keys.
+ *
+ * Replacing or removing a bill only marks its old slot dead, so live updates stay cheap;
+ * dead slots are skipped while searching and dropped by {@link #clear()}.
+ */
+public class BillSearchIndex {
+
+    // Cannot be typed, so a query never matches across fields; not NUL, which SQLite mishandles
+    private static final char FIELD_SEPARATOR = '\u0001';
+    private static final int INITIAL_CAPACITY = 1024;
+    // Slots verified between cancellation checks
+    private static final int CANCEL_CHECK_INTERVAL = 512;
+
+    // A slot's bill is null once it was replaced or removed
+    private final List<BillSummary> bills = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    // False once a bill was added out of newest-first order; results are then sorted
+    private boolean inOrder = true;
+
+    // Open-addressing hash table: trigram -> posting list of bill slots
+    private long[] gramKeys = new long[INITIAL_CAPACITY];
+    private int[][] postings = new int[INITIAL_CAPACITY][];
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int gramCount = 0;
+
+    /**
+     * Add a bill to the index, replacing any bill with the same ID.
+     * Bills are returned by {@link #search} newest first.
+     */
+    public void add(BillSummary bill) {
+        remove(bill.billId);
+
+        BillSummary previous = lastLive();
+        if (previous != null && BillSummary.NEWEST_FIRST.compare(previous, bill) > 0) {
+            inOrder = false;
+        }
+
+        int slot = bills.size();
+        String key = searchKey(bill);
+        bills.add(bill);
+        keys.add(key);
+        slotsById.put(bill.billId, slot);
+
+        for (int i = 0; i + 2 < key.length(); i++) {
+            char c0 = key.charAt(i);
+            char c1 = key.charAt(i + 1);
+            char c2 = key.charAt(i + 2);
+            if (c0 == FIELD_SEPARATOR || c1 == FIELD_SEPARATOR || c2 == FIELD_SEPARATOR) {
+                continue;
+            }
+            addPosting(gram(c0, c1, c2), slot);
+        }
+    }
+
+    public void addAll(List<BillSummary> newBills) {
+        for (BillSummary bill : newBills) {
+            add(bill);
+        }
+    }
+
+    public void remove(String billId) {
+        Integer slot = slotsById.remove(billId);
+        if (slot != null) {
+            bills.set(slot, null);
+        }
+    }
+
+    public void clear() {
+        bills.clear();
+        keys.clear();
+        slotsById.clear();
+        inOrder = true;
+        gramKeys = new long[INITIAL_CAPACITY];
+        postings = new int[INITIAL_CAPACITY][];
+        postingSizes = new int[INITIAL_CAPACITY];
+        used = new boolean[INITIAL_CAPACITY];
+        gramCount = 0;
+    }
+
+    public int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * Find bills whose number, customer name or phone contains the query (case-insensitive).
+     *
+     * @param query Raw search text; surrounding whitespace is ignored
+     * @param out List that is cleared and filled with the matching bills
+     */
+    public void search(String query, List<BillSummary> out) {
+        search(query, out, () -> false);
+    }
+
+    /**
+     * Same as {@link #search(String, List)}, but gives up once {@code cancelled} returns true,
+     * which is checked periodically while scanning.
+     *
+     * @return False if the search was cancelled and {@code out} is incomplete
+     */
+    public boolean search(String query, List<BillSummary> out, BooleanSupplier cancelled) {
+        if (!collect(query, out, cancelled)) {
+            return false;
+        }
+        if (!inOrder) {
+            Collections.sort(out, BillSummary.NEWEST_FIRST);
+        }
+        return true;
+    }
+
+    /**
+     * Lowercase "number, name, phone" key that queries are matched against as substrings.
+     * {@link BillStore} stores the same key, so local searches find the same bills.
+     */
+    static String searchKey(BillSummary bill) {
+        StringBuilder sb = new StringBuilder();
+        appendLower(sb, bill.billNumber);
+        sb.append(FIELD_SEPARATOR);
+        appendLower(sb, bill.customerName);
+        sb.append(FIELD_SEPARATOR);
+        appendLower(sb, bill.customerPhone);
+        return sb.toString();
+    }
+
+    /**
+     * @return The query as matched against {@link #searchKey}: without surrounding
+     *         whitespace and lowercase; empty for no search
+     */
+    static String normalizeQuery(String query) {
+        StringBuilder sb = new StringBuilder();
+        int start = 0;
+        int end = query == null ? 0 : query.length();
+        while (start < end && Character.isWhitespace(query.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(query.charAt(end - 1))) end--;
+        for (int i = start; i < end; i++) {
+            sb.append(lower(query.charAt(i)));
+        }
+        return sb.toString();
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private boolean collect(String query, List<BillSummary> out, BooleanSupplier cancelled) {
+        out.clear();
+
+        int start = 0;
+        int end = query == null ? 0 : query.length();
+        while (start < end && Character.isWhitespace(query.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(query.charAt(end - 1))) end--;
+        int length = end - start;
+
+        if (length == 0) {
+            for (BillSummary bill : bills) {
+                if (bill != null) {
+                    out.add(bill);
+                }
+            }
+            return true;
+        }
+
+        if (length < 3) {
+            for (int slot = 0; slot < keys.size(); slot++) {
+                if (slot % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                    return false;
+                }
+                addIfMatches(slot, query, start, end, out);
+            }
+            return true;
+        }
+
+        // Drive the search from the rarest trigram in the query
+        int bestIndex = -1;
+        for (int i = start; i + 2 < end; i++) {
+            int index = find(gram(lower(query.charAt(i)), lower(query.charAt(i + 1)), lower(query.charAt(i + 2))));
+            if (index < 0) {
+                return true; // A trigram no bill contains: nothing can match
+            }
+            if (bestIndex < 0 || postingSizes[index] < postingSizes[bestIndex]) {
+                bestIndex = index;
+            }
+        }
+
+        int[] candidates = postings[bestIndex];
+        int count = postingSizes[bestIndex];
+        for (int i = 0; i < count; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return false;
+            }
+            addIfMatches(candidates[i], query, start, end, out);
+        }
+        return true;
+    }
+
+    private void addIfMatches(int slot, String query, int start, int end, List<BillSummary> out) {
+        BillSummary bill = bills.get(slot);
+        if (bill != null && contains(keys.get(slot), query, start, end)) {
+            out.add(bill);
+        }
+    }
+
+    private BillSummary lastLive() {
+        for (int slot = bills.size() - 1; slot >= 0; slot--) {
+            BillSummary bill = bills.get(slot);
+            if (bill != null) {
+                return bill;
+            }
+        }
+        return null;
+    }
+
+    private static void appendLower(StringBuilder sb, String value) {
+        if (value == null) return;
+        for (int i = 0; i < value.length(); i++) {
+            sb.append(lower(value.charAt(i)));
+        }
+    }
+
+    private static char lower(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    private static long gram(char c0, char c1, char c2) {
+        return ((long) c0 << 32) | ((long) c1 << 16) | c2;
+    }
+
+    /**
+     * Case-insensitive substring test of query[start, end) against an already lowercase key.
+     */
+    private static boolean contains(String key, String query, int start, int end) {
+        int length = end - start;
+        int last = key.length() - length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < length; j++) {
+                if (key.charAt(i + j) != lower(query.charAt(start + j))) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private int find(long gram) {
+        int mask = gramKeys.length - 1;
+        int index = hash(gram) & mask;
+        while (used[index]) {
+            if (gramKeys[index] == gram) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void addPosting(long gram, int slot) {
+        if ((gramCount + 1) * 2 > gramKeys.length) {
+            rehash(gramKeys.length * 2);
+        }
+
+        int mask = gramKeys.length - 1;
+        int index = hash(gram) & mask;
+        while (used[index] && gramKeys[index] != gram) {
+            index = (index + 1) & mask;
+        }
+
+        if (!used[index]) {
+            used[index] = true;
+            gramKeys[index] = gram;
+            postings[index] = new int[4];
+            postingSizes[index] = 0;
+            gramCount++;
+        }
+
+        int size = postingSizes[index];
+        int[] list = postings[index];
+        if (size > 0 && list[size - 1] == slot) {
+            return; // Trigram repeated within the same bill
+        }
+        if (size == list.length) {
+            list = Arrays.copyOf(list, size + (size >> 1) + 1);
+            postings[index] = list;
+        }
+        list[size] = slot;
+        postingSizes[index] = size + 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = gramKeys;
+        int[][] oldPostings = postings;
+        int[] oldSizes = postingSizes;
+        boolean[] oldUsed = used;
+
+        gramKeys = new long[capacity];
+        postings = new int[capacity][];
+        postingSizes = new int[capacity];
+        used = new boolean[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) continue;
+            int index = hash(oldKeys[i]) & mask;
+            while (used[index]) {
+                index = (index + 1) & mask;
+            }
+            used[index] = true;
+            gramKeys[index] = oldKeys[i];
+            postings[index] = oldPostings[i];
+            postingSizes[index] = oldSizes[i];
+        }
+    }
+
+    private static int hash(long gram) {
+        long h = gram * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
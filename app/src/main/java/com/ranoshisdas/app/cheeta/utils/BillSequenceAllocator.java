@@ -0,0 +1,213 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out bill sequence numbers from blocks leased by this device.
+ *
+ * The shared counter at users/{uid}/meta/bill_counters/counters/{billMonth} holds the last
+ * sequence leased by any device. One transaction moves it forward by {@link #BLOCK_SIZE},
+ * and the device then numbers that many bills locally. Terminals on the same account
+ * contend on the counter once per block rather than once per bill.
+ *
+ * The lease is kept in SharedPreferences and each number is written there before it is
+ * used, so a number is never issued twice, even after a crash. Unused numbers:
+ * <ul>
+ *     <li>A save that fails gives its number back with {@link #release}, if no later number
+ *     has been taken.</li>
+ *     <li>When the month changes, the rest of the old block goes back to that month's
+ *     counter if no other device has leased since. Otherwise it stays a gap.</li>
+ *     <li>Bills from an earlier month, e.g. queued offline before the month changed, are
+ *     numbered one at a time from that month's counter and never disturb the current
+ *     lease.</li>
+ *     <li>A lease survives restarts and signing in again as the same user; signing in as
+ *     someone else drops it, leaving a gap.</li>
+ * </ul>
+ * So numbers are unique and increase on each device, but bills from several devices
+ * interleave and a month's sequence may have gaps. All methods must be called on the main
+ * thread.
+ */
+public class BillSequenceAllocator {
+
+    private static final String TAG = "BillSequenceAllocator";
+
+    public static final int BLOCK_SIZE = 20;
+
+    private static final String PREFS_NAME = "BillSequenceLease";
+    private static final String KEY_USER_ID = "user_id";
+    private static final String KEY_BILL_MONTH = "bill_month";
+    private static final String KEY_NEXT = "next";    // Next number to issue
+    private static final String KEY_LAST = "last";    // Last number in the block
+
+    private static BillSequenceAllocator instance;
+
+    // Lease transaction in flight, so concurrent requests do not lease two blocks
+    private Task<Integer> pendingLease;
+
+    public static synchronized BillSequenceAllocator getInstance() {
+        if (instance == null) {
+            instance = new BillSequenceAllocator();
+        }
+        return instance;
+    }
+
+    private BillSequenceAllocator() {}
+
+    /**
+     * Take the next sequence number from the current block without touching the network.
+     *
+     * @return The number, or 0 if there is no unused leased number for this month
+     */
+    public int tryNextLocal(Context context, String userId, String billMonth) {
+        SharedPreferences prefs = getPrefs(context.getApplicationContext());
+        if (!userId.equals(prefs.getString(KEY_USER_ID, null))
+                || !billMonth.equals(prefs.getString(KEY_BILL_MONTH, null))) {
+            return 0;
+        }
+        int next = prefs.getInt(KEY_NEXT, 0);
+        if (next <= 0 || next > prefs.getInt(KEY_LAST, 0)) {
+            return 0;
+        }
+        // commit, not apply: the number must be on disk before a bill carries it
+        prefs.edit().putInt(KEY_NEXT, next + 1).commit();
+        return next;
+    }
+
+    /**
+     * Take the next sequence number for a month. Completes immediately while the current
+     * block lasts; otherwise after one counter transaction, which needs a connection.
+     */
+    public Task<Integer> next(Context context, String userId, String billMonth) {
+        Context appContext = context.getApplicationContext();
+        int local = tryNextLocal(appContext, userId, billMonth);
+        if (local > 0) {
+            return Tasks.forResult(local);
+        }
+
+        SharedPreferences prefs = getPrefs(appContext);
+        String leaseUser = prefs.getString(KEY_USER_ID, null);
+        String leaseMonth = prefs.getString(KEY_BILL_MONTH, null);
+        boolean hasLease = userId.equals(leaseUser) && leaseMonth != null;
+        if (billMonth.compareTo(BillNumberGenerator.getCurrentBillMonth()) < 0
+                || (hasLease && billMonth.compareTo(leaseMonth) < 0)) {
+            // A past month needs few numbers; leasing a block for it would drop the
+            // current month's block and lease it again for the next current bill
+            return nextSingle(userId, billMonth);
+        }
+        if (hasLease && !billMonth.equals(leaseMonth)) {
+            // Forget the old month's block before returning it, so it is never issued again
+            int next = prefs.getInt(KEY_NEXT, 0);
+            int last = prefs.getInt(KEY_LAST, 0);
+            prefs.edit().remove(KEY_BILL_MONTH).remove(KEY_NEXT).remove(KEY_LAST).commit();
+            returnUnused(userId, leaseMonth, next, last);
+        }
+
+        if (pendingLease != null) {
+            return pendingLease.continueWithTask(task -> next(appContext, userId, billMonth));
+        }
+
+        DocumentReference counterRef = counterRef(userId, billMonth);
+        Task<Integer> lease = FirebaseUtil.db().runTransaction((Transaction transaction) -> {
+            DocumentSnapshot counter = transaction.get(counterRef);
+            Long lastSequence = counter.exists() ? counter.getLong("lastSequence") : null;
+            int first = (lastSequence != null ? lastSequence.intValue() : 0) + 1;
+
+            Map<String, Object> counterData = new HashMap<>();
+            counterData.put("lastSequence", first + BLOCK_SIZE - 1);
+            counterData.put("lastUpdated", System.currentTimeMillis());
+            transaction.set(counterRef, counterData);
+            return first;
+        });
+
+        pendingLease = lease.continueWith(task -> {
+            pendingLease = null;
+            int first = task.getResult(); // Rethrows a failed transaction
+            getPrefs(appContext).edit()
+                    .putString(KEY_USER_ID, userId)
+                    .putString(KEY_BILL_MONTH, billMonth)
+                    .putInt(KEY_NEXT, first + 1)
+                    .putInt(KEY_LAST, first + BLOCK_SIZE - 1)
+                    .commit();
+            return first;
+        });
+        return pendingLease;
+    }
+
+    /**
+     * Give back a number whose bill was not saved. Only the most recently issued number
+     * can be given back; anything else stays a gap.
+     */
+    public void release(Context context, String userId, String billMonth, int sequence) {
+        SharedPreferences prefs = getPrefs(context);
+        if (userId.equals(prefs.getString(KEY_USER_ID, null))
+                && billMonth.equals(prefs.getString(KEY_BILL_MONTH, null))
+                && prefs.getInt(KEY_NEXT, 0) == sequence + 1) {
+            prefs.edit().putInt(KEY_NEXT, sequence).commit();
+        }
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    /**
+     * Take one number from a month's counter, leaving the lease alone.
+     */
+    private Task<Integer> nextSingle(String userId, String billMonth) {
+        DocumentReference counterRef = counterRef(userId, billMonth);
+        return FirebaseUtil.db().runTransaction((Transaction transaction) -> {
+            DocumentSnapshot counter = transaction.get(counterRef);
+            Long lastSequence = counter.exists() ? counter.getLong("lastSequence") : null;
+            int sequence = (lastSequence != null ? lastSequence.intValue() : 0) + 1;
+
+            Map<String, Object> counterData = new HashMap<>();
+            counterData.put("lastSequence", sequence);
+            counterData.put("lastUpdated", System.currentTimeMillis());
+            transaction.set(counterRef, counterData);
+            return sequence;
+        });
+    }
+
+    /**
+     * Wind the month's counter back over the unused numbers if they are still its tail.
+     */
+    private void returnUnused(String userId, String billMonth, int next, int last) {
+        if (next <= 0 || next > last) {
+            return;
+        }
+        DocumentReference counterRef = counterRef(userId, billMonth);
+        FirebaseUtil.db().runTransaction((Transaction transaction) -> {
+            DocumentSnapshot counter = transaction.get(counterRef);
+            Long lastSequence = counter.getLong("lastSequence");
+            if (lastSequence != null && lastSequence == last) {
+                transaction.update(counterRef, "lastSequence", next - 1);
+            }
+            return null;
+        }).addOnFailureListener(e -> Log.w(TAG, "Unused sequences left as a gap", e));
+    }
+
+    private static DocumentReference counterRef(String userId, String billMonth) {
+        return FirebaseUtil.db()
+                .collection("users")
+                .document(userId)
+                .collection("meta")
+                .document("bill_counters")
+                .collection("counters")
+                .document(billMonth);
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,353 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Local SQLite mirror of users/{uid}/bill_index.
+ *
+ * Only bill summaries are mirrored, not full bills with their items and customer: the
+ * history list and its search need nothing more, and a full bill is fetched (and cached by
+ * {@link BillRepository}) when it is opened.
+ *
+ * Searches match the same way as {@link BillSearchIndex}, which serves them until the
+ * mirror is complete: the query is a case-insensitive substring of the bill number,
+ * customer name or phone. Each row stores that index's search key, and pages are read in
+ * timestamp order off (user_id, timestamp), testing the key with instr() until a page is
+ * full. A word index such as FTS cannot find fragments from inside a word or phone number,
+ * so results would change once the mirror took over.
+ *
+ * All methods are blocking and must be called off the main thread.
+ */
+public class BillStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "cheeta_bills.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_BILLS = "bills";
+    private static final String TABLE_SYNC = "sync_state";
+
+    private static BillStore instance;
+
+    /**
+     * Sync progress for one user: whether bill_index has been generated for legacy bills,
+     * the oldest summary copied so far and whether the whole history has been mirrored,
+     * then the updatedAt that delta syncs continue from and when the store was last
+     * checked against the full bill_index.
+     */
+    public static class SyncState {
+        public boolean indexMigrated;
+        public long cursorTimestamp;
+        public String cursorId;
+        public boolean complete;
+        public long updatedAt;
+        public long reconciledAt;
+    }
+
+    public static synchronized BillStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new BillStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BillStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_BILLS + " ("
+                + "bill_id TEXT NOT NULL UNIQUE, "
+                + "user_id TEXT NOT NULL, "
+                + "bill_number TEXT, "
+                + "customer_name TEXT, "
+                + "customer_phone TEXT, "
+                + "total REAL, "
+                + "item_count INTEGER, "
+                + "timestamp INTEGER NOT NULL, "
+                + "search_key TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX idx_bills_user_time ON " + TABLE_BILLS
+                + " (user_id, timestamp DESC, bill_id DESC)");
+
+        db.execSQL("CREATE TABLE " + TABLE_SYNC + " ("
+                + "user_id TEXT PRIMARY KEY, "
+                + "index_migrated INTEGER NOT NULL DEFAULT 0, "
+                + "cursor_timestamp INTEGER, "
+                + "cursor_id TEXT, "
+                + "complete INTEGER NOT NULL DEFAULT 0, "
+                + "updated_at INTEGER NOT NULL DEFAULT 0, "
+                + "reconciled_at INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Everything here is a cache of Firestore, so rebuild and let sync refill it
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BILLS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC);
+        onCreate(db);
+    }
+
+    // ========== Writes ==========
+
+    /**
+     * Insert or update bill summaries in a single transaction. Rows that already match are
+     * left alone.
+     *
+     * @return Number of bills that were added or changed
+     */
+    public int upsertBills(String userId, List<BillSummary> bills) {
+        SQLiteDatabase db = getWritableDatabase();
+        int changed = 0;
+
+        db.beginTransaction();
+        try {
+            for (BillSummary bill : bills) {
+                ContentValues values = toValues(userId, bill);
+
+                long rowId;
+                try (Cursor cursor = db.rawQuery("SELECT rowid, * FROM " + TABLE_BILLS
+                        + " WHERE bill_id = ?", new String[]{bill.billId})) {
+                    if (!cursor.moveToFirst()) {
+                        rowId = -1;
+                    } else if (sameContent(readBill(cursor), bill)) {
+                        continue;
+                    } else {
+                        rowId = cursor.getLong(0);
+                    }
+                }
+                if (rowId == -1) {
+                    db.insertOrThrow(TABLE_BILLS, null, values);
+                } else {
+                    db.update(TABLE_BILLS, values, "rowid = ?", new String[]{String.valueOf(rowId)});
+                }
+                changed++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return changed;
+    }
+
+    public void deleteBill(String billId) {
+        deleteBills(Collections.singletonList(billId));
+    }
+
+    public void deleteBills(List<String> billIds) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String billId : billIds) {
+                db.delete(TABLE_BILLS, "bill_id = ?", new String[]{billId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // ========== Reads ==========
+
+    /**
+     * Load one page of bills, newest first.
+     *
+     * @param query Optional search text matched as a substring of bill number, customer
+     *              name or phone, as {@link BillSearchIndex} does; empty for no search
+     * @param fromDate Inclusive lower timestamp bound, or 0 for none
+     * @param toDate Inclusive upper timestamp bound, or 0 for none
+     * @param after Last bill of the previous page, or null for the first page
+     * @param limit Maximum number of bills to return
+     */
+    public List<BillSummary> loadPage(String userId, String query, long fromDate, long toDate,
+                                      BillSummary after, int limit) {
+        StringBuilder sql = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        appendFilteredSelect(sql, args, userId, query, fromDate, toDate);
+
+        if (after != null) {
+            sql.append(" AND (b.timestamp < ? OR (b.timestamp = ? AND b.bill_id < ?))");
+            args.add(String.valueOf(after.timestamp));
+            args.add(String.valueOf(after.timestamp));
+            args.add(after.billId);
+        }
+
+        sql.append(" ORDER BY b.timestamp DESC, b.bill_id DESC LIMIT ").append(limit);
+        return readBills(sql.toString(), args);
+    }
+
+    /**
+     * Of the given bills, load those matching the same search and date range as
+     * {@link #loadPage}. Used to fold live changes into an already loaded list.
+     */
+    public List<BillSummary> loadMatching(String userId, String query, long fromDate, long toDate,
+                                          List<String> billIds) {
+        if (billIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder sql = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        appendFilteredSelect(sql, args, userId, query, fromDate, toDate);
+
+        sql.append(" AND b.bill_id IN (");
+        for (int i = 0; i < billIds.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            args.add(billIds.get(i));
+        }
+        sql.append(")");
+        return readBills(sql.toString(), args);
+    }
+
+    public long countBills(String userId) {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_BILLS,
+                "user_id = ?", new String[]{userId});
+    }
+
+    /**
+     * IDs of stored bills after {@code afterId} up to and including {@code upToId}, in
+     * Firestore's document ID order.
+     *
+     * @param afterId Exclusive lower bound, or null for none
+     * @param upToId  Inclusive upper bound, or null for none
+     */
+    public List<String> loadIds(String userId, String afterId, String upToId) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT bill_id FROM " + TABLE_BILLS + " WHERE user_id = ?");
+        List<String> args = new ArrayList<>();
+        args.add(userId);
+        if (afterId != null) {
+            sql.append(" AND bill_id > ?");
+            args.add(afterId);
+        }
+        if (upToId != null) {
+            sql.append(" AND bill_id <= ?");
+            args.add(upToId);
+        }
+        // Binary collation compares UTF-8 bytes, as Firestore orders document IDs
+        sql.append(" ORDER BY bill_id");
+
+        List<String> ids = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql.toString(),
+                args.toArray(new String[0]))) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        }
+        return ids;
+    }
+
+    // ========== Sync State ==========
+
+    public SyncState getSyncState(String userId) {
+        SyncState state = new SyncState();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SYNC,
+                new String[]{"index_migrated", "cursor_timestamp", "cursor_id", "complete",
+                        "updated_at", "reconciled_at"},
+                "user_id = ?", new String[]{userId}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                state.indexMigrated = cursor.getInt(0) == 1;
+                state.cursorTimestamp = cursor.getLong(1);
+                state.cursorId = cursor.getString(2);
+                state.complete = cursor.getInt(3) == 1;
+                state.updatedAt = cursor.getLong(4);
+                state.reconciledAt = cursor.getLong(5);
+            }
+        }
+        return state;
+    }
+
+    public void saveSyncState(String userId, SyncState state) {
+        ContentValues values = new ContentValues();
+        values.put("user_id", userId);
+        values.put("index_migrated", state.indexMigrated ? 1 : 0);
+        values.put("cursor_timestamp", state.cursorTimestamp);
+        values.put("cursor_id", state.cursorId);
+        values.put("complete", state.complete ? 1 : 0);
+        values.put("updated_at", state.updatedAt);
+        values.put("reconciled_at", state.reconciledAt);
+        getWritableDatabase().insertWithOnConflict(TABLE_SYNC, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static void appendFilteredSelect(StringBuilder sql, List<String> args, String userId,
+                                             String query, long fromDate, long toDate) {
+        sql.append("SELECT b.* FROM " + TABLE_BILLS + " b WHERE b.user_id = ?");
+        args.add(userId);
+
+        String search = BillSearchIndex.normalizeQuery(query);
+        if (!search.isEmpty()) {
+            // Both sides are lowercased in Java, so instr's exact comparison is case-insensitive
+            sql.append(" AND instr(b.search_key, ?) > 0");
+            args.add(search);
+        }
+        if (fromDate > 0) {
+            sql.append(" AND b.timestamp >= ?");
+            args.add(String.valueOf(fromDate));
+        }
+        if (toDate > 0) {
+            sql.append(" AND b.timestamp <= ?");
+            args.add(String.valueOf(toDate));
+        }
+    }
+
+    private List<BillSummary> readBills(String sql, List<String> args) {
+        List<BillSummary> bills = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, args.toArray(new String[0]))) {
+            while (cursor.moveToNext()) {
+                bills.add(readBill(cursor));
+            }
+        }
+        return bills;
+    }
+
+    private static boolean sameContent(BillSummary a, BillSummary b) {
+        return Objects.equals(a.billNumber, b.billNumber)
+                && Objects.equals(a.customerName, b.customerName)
+                && Objects.equals(a.customerPhone, b.customerPhone)
+                && a.total == b.total
+                && a.itemCount == b.itemCount
+                && a.timestamp == b.timestamp;
+    }
+
+    private static ContentValues toValues(String userId, BillSummary bill) {
+        ContentValues values = new ContentValues();
+        values.put("bill_id", bill.billId);
+        values.put("user_id", userId);
+        values.put("bill_number", bill.billNumber);
+        values.put("customer_name", bill.customerName);
+        values.put("customer_phone", bill.customerPhone);
+        values.put("total", bill.total);
+        values.put("item_count", bill.itemCount);
+        values.put("timestamp", bill.timestamp);
+        values.put("search_key", BillSearchIndex.searchKey(bill));
+        return values;
+    }
+
+    private static BillSummary readBill(Cursor c) {
+        BillSummary bill = new BillSummary();
+        bill.billId = c.getString(c.getColumnIndexOrThrow("bill_id"));
+        bill.billNumber = c.getString(c.getColumnIndexOrThrow("bill_number"));
+        bill.customerName = c.getString(c.getColumnIndexOrThrow("customer_name"));
+        bill.customerPhone = c.getString(c.getColumnIndexOrThrow("customer_phone"));
+        bill.total = c.getDouble(c.getColumnIndexOrThrow("total"));
+        bill.itemCount = c.getInt(c.getColumnIndexOrThrow("item_count"));
+        bill.timestamp = c.getLong(c.getColumnIndexOrThrow("timestamp"));
+        return bill;
+    }
+}
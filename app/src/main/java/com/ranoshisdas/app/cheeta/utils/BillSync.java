@@ -0,0 +1,418 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps {@link BillStore} in step with Firestore in the background.
+ *
+ * Accounts with bills saved before users/{uid}/bill_index existed are migrated first: every
+ * bill is read once and its summary written to bill_index, and a marker document records
+ * that the migration finished. The first time an account is seen on a device the whole
+ * bill_index is copied in batches, newest first, and progress is saved after every batch so
+ * an interrupted backfill resumes where it stopped.
+ *
+ * After that only changes are fetched. Every write to bill_index goes through
+ * {@link #indexEntry}, which sets a server {@code updatedAt}, and a delta sync reads the
+ * summaries updated since the last one, so edits to old bills arrive too. Deleted bills
+ * leave nothing to read, so after each delta sync the server's count of bill_index is
+ * compared with the store's. If they differ, or a week has passed, the store is
+ * reconciled against the whole bill_index: page by page in document ID order, updating
+ * every summary and dropping stored bills that are gone. This also repairs summaries
+ * edited without updatedAt, e.g. in the console.
+ */
+public class BillSync {
+
+    private static final String TAG = "BillSync";
+    private static final int BATCH_SIZE = 500;
+
+    public static final String FIELD_UPDATED_AT = "updatedAt";
+    // Edits written while a backfill runs are picked up by the first delta sync
+    private static final long BACKFILL_OVERLAP_MS = 60 * 60 * 1000L;
+    private static final long RECONCILE_INTERVAL_MS = 7 * 24 * 60 * 60 * 1000L;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static boolean backfillRunning = false;
+
+    public interface OnSyncListener {
+        /**
+         * Called on the main thread after bills in the store were added, changed or removed.
+         */
+        void onBillsSynced(int changedBills);
+    }
+
+    /**
+     * Executor used for all store access triggered by sync. Screens reading the store can
+     * share it so reads never race a half-applied batch.
+     */
+    public static ExecutorService executor() {
+        return executor;
+    }
+
+    public static CollectionReference billIndex(String userId) {
+        return FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection("bill_index");
+    }
+
+    /**
+     * Fields of bill_index/{billId}; every write of a summary must use this.
+     */
+    public static Map<String, Object> indexEntry(BillSummary summary) {
+        Map<String, Object> data = summary.toMap();
+        data.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    /**
+     * Read a bill_index document.
+     */
+    public static BillSummary toSummary(DocumentSnapshot doc) {
+        BillSummary summary = new BillSummary();
+        summary.billId = doc.getId();
+        summary.billNumber = doc.getString("billNumber");
+        summary.customerName = doc.getString("customerName");
+        summary.customerPhone = doc.getString("customerPhone");
+        Double total = doc.getDouble("total");
+        summary.total = total != null ? total : 0;
+        Long timestamp = doc.getLong("timestamp");
+        summary.timestamp = timestamp != null ? timestamp : 0;
+        Long itemCount = doc.getLong("itemCount");
+        summary.itemCount = itemCount != null ? itemCount.intValue() : 0;
+        return summary;
+    }
+
+    /**
+     * Copy the full history into the local store, resuming any earlier partial run.
+     * Does nothing if the backfill already completed or is running.
+     */
+    public static synchronized void backfill(Context context, String userId) {
+        if (backfillRunning) {
+            return;
+        }
+        backfillRunning = true;
+
+        BillStore store = BillStore.getInstance(context);
+        executor.execute(() -> {
+            BillStore.SyncState state = store.getSyncState(userId);
+            if (state.complete) {
+                finishBackfill();
+            } else if (!state.indexMigrated) {
+                checkIndexMigration(store, userId, state);
+            } else {
+                fetchBackfillBatch(store, userId, state);
+            }
+        });
+    }
+
+    /**
+     * Fetch summaries changed since the last sync, then reconcile if bills were deleted.
+     * Only meaningful once the backfill has completed.
+     */
+    public static void syncRecent(Context context, String userId, OnSyncListener listener) {
+        BillStore store = BillStore.getInstance(context);
+        executor.execute(() -> {
+            BillStore.SyncState state = store.getSyncState(userId);
+            if (state.complete) {
+                fetchUpdatedBatch(store, userId, state, null, 0, listener);
+            }
+        });
+    }
+
+    /* =========================
+       LEGACY MIGRATION
+       ========================= */
+
+    private static DocumentReference migrationMarker(String userId) {
+        return FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection("meta")
+                .document("bill_index");
+    }
+
+    private static void checkIndexMigration(BillStore store, String userId, BillStore.SyncState state) {
+        migrationMarker(userId).get()
+                .addOnSuccessListener(executor, marker -> {
+                    if (marker.exists() && Boolean.TRUE.equals(marker.getBoolean("migrated"))) {
+                        markIndexMigrated(store, userId, state);
+                    } else {
+                        migrateBatch(store, userId, state, null);
+                    }
+                })
+                .addOnFailureListener(executor, e -> {
+                    Log.w(TAG, "Bill index migration check failed", e);
+                    finishBackfill();
+                });
+    }
+
+    private static void migrateBatch(BillStore store, String userId, BillStore.SyncState state,
+                                     DocumentSnapshot after) {
+        Query query = FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection("bills")
+                .orderBy(FieldPath.documentId());
+
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+
+        query.limit(BATCH_SIZE)
+                .get()
+                .addOnSuccessListener(executor, snapshots -> {
+                    if (snapshots.isEmpty()) {
+                        completeMigration(store, userId, state);
+                        return;
+                    }
+
+                    WriteBatch batch = FirebaseUtil.db().batch();
+                    for (QueryDocumentSnapshot doc : snapshots) {
+                        Bill bill;
+                        try {
+                            bill = BillCodec.decode(doc);
+                        } catch (RuntimeException e) {
+                            // Left out of the index rather than stopping the migration
+                            Log.e(TAG, "Skipping unreadable bill " + doc.getId(), e);
+                            continue;
+                        }
+                        if (bill == null) {
+                            continue;
+                        }
+                        batch.set(billIndex(userId).document(doc.getId()),
+                                indexEntry(BillSummary.fromBill(bill)));
+                    }
+
+                    List<DocumentSnapshot> docs = snapshots.getDocuments();
+                    DocumentSnapshot last = docs.get(docs.size() - 1);
+                    boolean done = snapshots.size() < BATCH_SIZE;
+
+                    batch.commit()
+                            .addOnSuccessListener(executor, unused -> {
+                                if (done) {
+                                    completeMigration(store, userId, state);
+                                } else {
+                                    migrateBatch(store, userId, state, last);
+                                }
+                            })
+                            .addOnFailureListener(executor, e -> {
+                                Log.w(TAG, "Bill index migration interrupted", e);
+                                finishBackfill();
+                            });
+                })
+                .addOnFailureListener(executor, e -> {
+                    Log.w(TAG, "Bill index migration interrupted", e);
+                    finishBackfill();
+                });
+    }
+
+    private static void completeMigration(BillStore store, String userId, BillStore.SyncState state) {
+        migrationMarker(userId)
+                .set(Collections.singletonMap("migrated", true))
+                .addOnSuccessListener(executor, unused -> markIndexMigrated(store, userId, state))
+                .addOnFailureListener(executor, e -> {
+                    Log.w(TAG, "Bill index migration marker not saved", e);
+                    finishBackfill();
+                });
+    }
+
+    private static void markIndexMigrated(BillStore store, String userId, BillStore.SyncState state) {
+        state.indexMigrated = true;
+        store.saveSyncState(userId, state);
+        fetchBackfillBatch(store, userId, state);
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static void fetchBackfillBatch(BillStore store, String userId, BillStore.SyncState state) {
+        Query query = billIndex(userId)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+
+        if (state.cursorId != null) {
+            query = query.startAfter(state.cursorTimestamp, state.cursorId);
+        } else {
+            // A full copy is as good as a reconcile; deltas start from just before it
+            long now = System.currentTimeMillis();
+            state.updatedAt = now - BACKFILL_OVERLAP_MS;
+            state.reconciledAt = now;
+        }
+
+        query.limit(BATCH_SIZE)
+                .get()
+                .addOnSuccessListener(executor, snapshots -> {
+                    List<BillSummary> bills = toSummaries(snapshots);
+                    store.upsertBills(userId, bills);
+
+                    if (!bills.isEmpty()) {
+                        BillSummary last = bills.get(bills.size() - 1);
+                        state.cursorTimestamp = last.timestamp;
+                        state.cursorId = last.billId;
+                    }
+                    state.complete = bills.size() < BATCH_SIZE;
+                    store.saveSyncState(userId, state);
+
+                    if (state.complete) {
+                        finishBackfill();
+                    } else {
+                        fetchBackfillBatch(store, userId, state);
+                    }
+                })
+                .addOnFailureListener(executor, e -> {
+                    Log.w(TAG, "Bill backfill interrupted", e);
+                    finishBackfill();
+                });
+    }
+
+    private static void fetchUpdatedBatch(BillStore store, String userId, BillStore.SyncState state,
+                                          DocumentSnapshot after, int synced,
+                                          OnSyncListener listener) {
+        // >= so a summary sharing the last updatedAt is not skipped; upserts are idempotent
+        Query query = billIndex(userId)
+                .whereGreaterThanOrEqualTo(FIELD_UPDATED_AT, new Date(state.updatedAt))
+                .orderBy(FIELD_UPDATED_AT, Query.Direction.ASCENDING);
+
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+
+        query.limit(BATCH_SIZE)
+                .get()
+                .addOnSuccessListener(executor, snapshots -> {
+                    int total = synced + store.upsertBills(userId, toSummaries(snapshots));
+                    for (QueryDocumentSnapshot doc : snapshots) {
+                        Date updatedAt = doc.getDate(FIELD_UPDATED_AT);
+                        if (updatedAt != null) {
+                            state.updatedAt = Math.max(state.updatedAt, updatedAt.getTime());
+                        }
+                    }
+                    store.saveSyncState(userId, state);
+
+                    if (snapshots.size() == BATCH_SIZE) {
+                        List<DocumentSnapshot> docs = snapshots.getDocuments();
+                        fetchUpdatedBatch(store, userId, state, docs.get(docs.size() - 1), total, listener);
+                    } else {
+                        checkForDeletions(store, userId, state, total, listener);
+                    }
+                })
+                .addOnFailureListener(executor, e -> Log.w(TAG, "Recent bill sync failed", e));
+    }
+
+    /**
+     * Reconcile when the server holds a different number of bills than the store, or when
+     * the last reconcile is more than {@link #RECONCILE_INTERVAL_MS} ago.
+     */
+    private static void checkForDeletions(BillStore store, String userId, BillStore.SyncState state,
+                                          int synced, OnSyncListener listener) {
+        if (System.currentTimeMillis() - state.reconciledAt > RECONCILE_INTERVAL_MS) {
+            reconcileBatch(store, userId, state, null, synced, listener);
+            return;
+        }
+        billIndex(userId).count()
+                .get(AggregateSource.SERVER)
+                .addOnSuccessListener(executor, count -> {
+                    if (count.getCount() != store.countBills(userId)) {
+                        reconcileBatch(store, userId, state, null, synced, listener);
+                    } else {
+                        notifySynced(synced, listener);
+                    }
+                })
+                .addOnFailureListener(executor, e -> {
+                    Log.w(TAG, "Bill count check failed", e);
+                    notifySynced(synced, listener);
+                });
+    }
+
+    /**
+     * Compare one page of bill_index, in document ID order, with the stored bills in the
+     * same ID range: update every summary and delete stored bills missing from the page.
+     */
+    private static void reconcileBatch(BillStore store, String userId, BillStore.SyncState state,
+                                       DocumentSnapshot after, int synced,
+                                       OnSyncListener listener) {
+        Query query = billIndex(userId).orderBy(FieldPath.documentId());
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+
+        query.limit(BATCH_SIZE)
+                .get()
+                .addOnSuccessListener(executor, snapshots -> {
+                    List<DocumentSnapshot> docs = snapshots.getDocuments();
+                    boolean last = docs.size() < BATCH_SIZE;
+                    String afterId = after != null ? after.getId() : null;
+                    // The last page also covers every stored ID after it
+                    String upToId = last ? null : docs.get(docs.size() - 1).getId();
+
+                    Set<String> present = new HashSet<>();
+                    for (DocumentSnapshot doc : docs) {
+                        present.add(doc.getId());
+                    }
+                    List<String> gone = new ArrayList<>();
+                    for (String billId : store.loadIds(userId, afterId, upToId)) {
+                        if (!present.contains(billId)) {
+                            gone.add(billId);
+                        }
+                    }
+                    store.deleteBills(gone);
+                    int total = synced + gone.size() + store.upsertBills(userId, toSummaries(snapshots));
+
+                    if (!last) {
+                        reconcileBatch(store, userId, state, docs.get(docs.size() - 1), total, listener);
+                        return;
+                    }
+                    state.reconciledAt = System.currentTimeMillis();
+                    store.saveSyncState(userId, state);
+                    notifySynced(total, listener);
+                })
+                .addOnFailureListener(executor, e -> {
+                    Log.w(TAG, "Bill reconcile interrupted", e);
+                    notifySynced(synced, listener);
+                });
+    }
+
+    private static void notifySynced(int changed, OnSyncListener listener) {
+        if (changed > 0 && listener != null) {
+            mainHandler.post(() -> listener.onBillsSynced(changed));
+        }
+    }
+
+    private static synchronized void finishBackfill() {
+        backfillRunning = false;
+    }
+
+    public static List<BillSummary> toSummaries(QuerySnapshot snapshots) {
+        List<BillSummary> bills = new ArrayList<>();
+        for (QueryDocumentSnapshot doc : snapshots) {
+            bills.add(toSummary(doc));
+        }
+        return bills;
+    }
+}
@@ -0,0 +1,38 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+/**
+ * Bill totals in paise, computed with fixed rounding rules:
+ * <ul>
+ *     <li>Line amount = unit price × quantity, exact.</li>
+ *     <li>Subtotal = sum of line amounts, exact.</li>
+ *     <li>CGST and SGST are each the rate applied to the subtotal, rounded half away from
+ *     zero to the paisa. Tax is never computed per line.</li>
+ *     <li>Total = subtotal + CGST + SGST, exact.</li>
+ * </ul>
+ * Mutable so one instance can be reused for every recalculation.
+ */
+public class BillTotals {
+
+    public long subtotal;
+    public long cgst;
+    public long sgst;
+    public long total;
+
+    /**
+     * @param subtotal        Sum of line amounts in paise
+     * @param cgstBasisPoints CGST rate, see {@link Money#basisPoints(float)}
+     * @param sgstBasisPoints SGST rate, see {@link Money#basisPoints(float)}
+     * @return This, updated
+     */
+    public BillTotals compute(long subtotal, int cgstBasisPoints, int sgstBasisPoints) {
+        this.subtotal = subtotal;
+        cgst = Money.percentOf(subtotal, cgstBasisPoints);
+        sgst = Money.percentOf(subtotal, sgstBasisPoints);
+        total = subtotal + cgst + sgst;
+        return this;
+    }
+
+    public BillTotals compute(long subtotal, float cgstRate, float sgstRate) {
+        return compute(subtotal, Money.basisPoints(cgstRate), Money.basisPoints(sgstRate));
+    }
+}
@@ -0,0 +1,67 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * A few mutable bitmaps kept between invoice renders, so rendering strip after strip, or
+ * bill after bill, does not allocate and garbage-collect a large bitmap each time.
+ *
+ * A pooled bitmap is handed out again for any request its allocation can hold, after
+ * {@link Bitmap#reconfigure}. At most {@link #MAX_POOLED} strip-sized bitmaps are kept, so
+ * the pool itself stays around 2 MB. Safe to use from several threads.
+ */
+public class BitmapPool {
+
+    private static final int MAX_POOLED = 2;
+    // Larger bitmaps, e.g. a whole invoice image, are freed rather than kept around
+    private static final int MAX_POOLED_BYTES = 2 * 1024 * 1024;
+
+    private static final ArrayDeque<Bitmap> pool = new ArrayDeque<>();
+
+    private BitmapPool() {}
+
+    /**
+     * @return A bitmap of exactly this size and config; its pixels are undefined
+     */
+    public static Bitmap acquire(int width, int height, Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        synchronized (pool) {
+            for (Iterator<Bitmap> it = pool.iterator(); it.hasNext(); ) {
+                Bitmap bitmap = it.next();
+                if (bitmap.getAllocationByteCount() >= needed) {
+                    it.remove();
+                    if (bitmap.getWidth() != width || bitmap.getHeight() != height
+                            || bitmap.getConfig() != config) {
+                        bitmap.reconfigure(width, height, config);
+                    }
+                    return bitmap;
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Return a bitmap from {@link #acquire} once nothing draws into it any more.
+     */
+    public static void release(Bitmap bitmap) {
+        synchronized (pool) {
+            if (pool.size() < MAX_POOLED && bitmap.getAllocationByteCount() <= MAX_POOLED_BYTES) {
+                pool.push(bitmap);
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+}
@@ -0,0 +1,59 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 over a sequence of values, for IDs and cache keys derived from content.
+ *
+ * Every value is written with its type's fixed width or a length prefix, so different
+ * sequences never hash the same input, e.g. ("ab", "c") and ("a", "bc"), or null and "".
+ */
+public final class ContentHash {
+
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[8];
+
+    public ContentHash() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public ContentHash add(String value) {
+        if (value == null) {
+            return add(-1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        add(bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    public ContentHash add(long value) {
+        for (int i = 0; i < 8; i++) {
+            buffer[i] = (byte) (value >>> (56 - 8 * i));
+        }
+        digest.update(buffer, 0, 8);
+        return this;
+    }
+
+    /**
+     * @param length Number of hex digits, at most 64; 32 is plenty for uniqueness
+     * @return The hash of everything added so far, in lowercase hex. Resets the hash.
+     */
+    public String toHex(int length) {
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(length);
+        for (int i = 0; hex.length() < length; i++) {
+            hex.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+            if (hex.length() < length) {
+                hex.append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,233 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.ranoshisdas.app.cheeta.models.Customer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Process-wide copy of the signed-in user's customers (users/{uid}/customers), keyed by
+ * normalized phone number.
+ *
+ * One snapshot listener keeps the copy current. Customers are held in a sorted map, so
+ * the customers whose phone starts with some digits are one contiguous range, found in
+ * O(log n). Lookups are safe from any thread, e.g. an autocomplete filter; start, stop and
+ * {@link #remember} must be called on the main thread.
+ */
+public class CustomerDirectory {
+
+    private static final String TAG = "CustomerDirectory";
+
+    private static CustomerDirectory instance;
+
+    private final ConcurrentSkipListMap<String, Customer> customersByPhone =
+            new ConcurrentSkipListMap<>();
+
+    private String userId;
+    private ListenerRegistration registration;
+
+    public static synchronized CustomerDirectory getInstance() {
+        if (instance == null) {
+            instance = new CustomerDirectory();
+        }
+        return instance;
+    }
+
+    private CustomerDirectory() {}
+
+    /**
+     * The directory for the signed-in user, starting its listener if needed.
+     */
+    public static CustomerDirectory forCurrentUser() {
+        CustomerDirectory directory = getInstance();
+        directory.start(FirebaseUtil.auth().getCurrentUser().getUid());
+        return directory;
+    }
+
+    /**
+     * Start listening for the user's customers. Does nothing if already listening for them.
+     */
+    public void start(String userId) {
+        if (registration != null && userId.equals(this.userId)) {
+            return;
+        }
+        stop();
+        this.userId = userId;
+
+        registration = FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection("customers")
+                .addSnapshotListener((snapshots, e) -> {
+                    if (e != null || snapshots == null) {
+                        Log.w(TAG, "Customer updates stopped", e);
+                        return;
+                    }
+
+                    for (DocumentChange change : snapshots.getDocumentChanges()) {
+                        QueryDocumentSnapshot doc = change.getDocument();
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            customersByPhone.remove(doc.getId());
+                        } else {
+                            Customer customer = new Customer();
+                            customer.name = doc.getString("name");
+                            customer.phone = doc.getString("phone");
+                            customer.email = doc.getString("email");
+                            customersByPhone.put(doc.getId(), customer);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Stop listening and forget all customers, e.g. when the user signs out.
+     */
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        userId = null;
+        customersByPhone.clear();
+    }
+
+    /**
+     * Add or update a customer locally right away, e.g. for a bill still in the outbox.
+     * The listener replaces it with the stored version once that is written.
+     */
+    public void remember(Customer customer) {
+        String key = normalizePhone(customer.phone);
+        if (key == null) {
+            return;
+        }
+        Customer known = customersByPhone.get(key);
+        if (known != null && (customer.email == null || customer.email.isEmpty())) {
+            Customer merged = new Customer();
+            merged.name = customer.name;
+            merged.phone = customer.phone;
+            merged.email = known.email;
+            customer = merged;
+        }
+        customersByPhone.put(key, customer);
+    }
+
+    /**
+     * @param typed Phone number as typed so far; non-digits are ignored, and a leading 0
+     *              or 91 is matched both ways, since {@link #normalizePhone} drops it only
+     *              once the number is complete
+     * @return Up to {@code limit} customers whose normalized phone starts with the digits,
+     *         in phone order; empty for no digits
+     */
+    public List<Customer> findByPhonePrefix(String typed, int limit) {
+        String digits = digitsOnly(typed);
+        if (digits.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Merged in phone order; each range contributes at most the limit
+        TreeMap<String, Customer> matches = new TreeMap<>();
+        addPrefixMatches(digits, limit, matches);
+        String national = stripTrunkPrefix(digits);
+        if (national != null) {
+            addPrefixMatches(national, limit, matches);
+        }
+
+        List<Customer> results = new ArrayList<>(Math.min(limit, matches.size()));
+        for (Customer customer : matches.values()) {
+            if (results.size() == limit) {
+                break;
+            }
+            results.add(customer);
+        }
+        return results;
+    }
+
+    /**
+     * Document ID for a customer: the phone's digits, without a leading 0 or +91 on Indian
+     * numbers, so the same person typed different ways maps to one customer.
+     *
+     * @return The key, or null if the phone has no digits
+     */
+    public static String normalizePhone(String phone) {
+        String digits = digitsOnly(phone);
+        if (digits.length() == 12 || digits.length() == 11) {
+            String national = stripTrunkPrefix(digits);
+            if (national != null && national.length() == 10) {
+                digits = national;
+            }
+        }
+        return digits.isEmpty() ? null : digits;
+    }
+
+    /**
+     * Fields to merge into users/{uid}/customers/{normalizedPhone} for a saved bill. Blank
+     * name or email never overwrite known ones.
+     */
+    public static Map<String, Object> toUpsert(Customer customer, long billTimestamp) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("phone", customer.phone);
+        if (customer.name != null && !customer.name.isEmpty()) {
+            data.put("name", customer.name);
+        }
+        if (customer.email != null && !customer.email.isEmpty()) {
+            data.put("email", customer.email);
+        }
+        data.put("lastBillAt", billTimestamp);
+        return data;
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    /**
+     * The one rule for Indian prefixes: a leading 91 or 0 goes when what remains can be a
+     * 10-digit number, i.e. at most 12 or 11 digits were given.
+     *
+     * @return The digits without the prefix, or null if they have none or are too long
+     */
+    private static String stripTrunkPrefix(String digits) {
+        if (digits.startsWith("91") && digits.length() > 2 && digits.length() <= 12) {
+            return digits.substring(2);
+        }
+        if (digits.startsWith("0") && digits.length() > 1 && digits.length() <= 11) {
+            return digits.substring(1);
+        }
+        return null;
+    }
+
+    private void addPrefixMatches(String prefix, int limit, Map<String, Customer> matches) {
+        // Every key with this prefix sorts between the prefix and the prefix + ':',
+        // since ':' follows '9'
+        int added = 0;
+        for (Map.Entry<String, Customer> entry
+                : customersByPhone.subMap(prefix, prefix + ':').entrySet()) {
+            if (added == limit) {
+                break;
+            }
+            matches.put(entry.getKey(), entry.getValue());
+            added++;
+        }
+    }
+
+    private static String digitsOnly(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * Runs an action on the main thread once calls have stopped for a delay.
+ * Bound to a lifecycle: anything pending is dropped when the owner is destroyed.
+ */
+public class Debouncer implements DefaultLifecycleObserver {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final long delayMillis;
+    private Runnable pending;
+    private boolean destroyed = false;
+
+    public Debouncer(LifecycleOwner owner, long delayMillis) {
+        this.delayMillis = delayMillis;
+        owner.getLifecycle().addObserver(this);
+    }
+
+    /**
+     * Schedule the action, replacing any action not yet run.
+     */
+    public void submit(Runnable action) {
+        cancel();
+        if (destroyed) {
+            return;
+        }
+        pending = action;
+        handler.postDelayed(action, delayMillis);
+    }
+
+    public void cancel() {
+        if (pending != null) {
+            handler.removeCallbacks(pending);
+            pending = null;
+        }
+    }
+
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        destroyed = true;
+        cancel();
+        owner.getLifecycle().removeObserver(this);
+    }
+}
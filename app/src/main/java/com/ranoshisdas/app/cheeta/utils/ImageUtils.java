@@ -1,25 +1,50 @@
 package com.ranoshisdas.app.cheeta.utils;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Rect;
-import android.os.Environment;
 
 import com.ranoshisdas.app.cheeta.models.Bill;
-import com.ranoshisdas.app.cheeta.models.BillItem;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-
+import java.io.OutputStream;
+
+/**
+ * Renders a bill as one tall image from its {@link InvoiceLayout}: the same blocks as the
+ * PDF, stacked without page breaks and scaled by {@link #SCALE}.
+ *
+ * PNG images are drawn in strips of {@link #STRIP_HEIGHT} pixels into one pooled bitmap, and
+ * each strip's rows go straight to {@link PngStreamEncoder}. Peak memory is one strip
+ * however many lines the bill has. WebP and JPEG encoders only take a whole bitmap, so
+ * those formats are used while the whole RGB_565 bitmap fits in
+ * {@link #MAX_WHOLE_BITMAP_BYTES}; longer bills fall back to streamed PNG.
+ */
 public class ImageUtils {
 
+    /** Bump whenever the rendered output changes, so cached invoices are redrawn. */
+    public static final int LAYOUT_VERSION = 3;
+
+    public static final String FORMAT_PNG = "png";
+    public static final String FORMAT_WEBP = "webp";
+    public static final String FORMAT_JPEG = "jpeg";
+
+    // Pixels per layout point; 1.5 makes body text 16.5 px on a 893 px wide image
+    private static final float SCALE = 1.5f;
+    // Below the last line of the footer
+    private static final int BOTTOM_MARGIN = 30;
+    private static final int STRIP_HEIGHT = 256;
+    // About 150 lines at 2 bytes per pixel
+    private static final long MAX_WHOLE_BITMAP_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * @return The bill's image in the format chosen in {@link InvoiceSettings}, from
+     *         {@link InvoiceCache} if it was rendered before
+     */
     public static File generateBillImage(Context context, Bill bill) throws IOException {
 
         // Validate that bill has required data
@@ -27,201 +52,123 @@ public class ImageUtils {
             throw new IOException("Bill missing business details. This bill may have been created with an older version.");
         }
 
-        // Calculate image height based on items
-        int baseHeight = 750;
-        int itemHeight = 40;
-        int totalHeight = baseHeight + (bill.items.size() * itemHeight);
-
-        // Create bitmap
-        Bitmap bitmap = Bitmap.createBitmap(800, totalHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-
-        // Background
-        canvas.drawColor(Color.WHITE);
-
-        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        int y = 40;
-        int lineHeight = 35;
-        int margin = 30;
-
-        /* =========================
-           BUSINESS HEADER FROM FIREBASE
-           ========================= */
-        paint.setTextSize(36);
-        paint.setColor(Color.BLACK);
-        paint.setFakeBoldText(true);
-        canvas.drawText(bill.businessDetails.name, margin, y, paint);
-        y += lineHeight;
-
-        // Business Details
-        paint.setTextSize(20);
-        paint.setFakeBoldText(false);
-
-        if (bill.businessDetails.address != null && !bill.businessDetails.address.isEmpty()) {
-            canvas.drawText(bill.businessDetails.address, margin, y, paint);
-            y += lineHeight - 10;
+        String format = InvoiceSettings.getImageFormat(context);
+        int quality = InvoiceSettings.getImageQuality(context);
+        int width = Math.round(InvoiceLayout.WIDTH * SCALE);
+        long maxHeight = Math.round((InvoiceLayout.maxFlowHeight(bill.items.size()) + BOTTOM_MARGIN) * SCALE);
+        if (!FORMAT_PNG.equals(format) && width * maxHeight * 2 > MAX_WHOLE_BITMAP_BYTES) {
+            format = FORMAT_PNG;
         }
-
-        if (bill.businessDetails.phone != null && !bill.businessDetails.phone.isEmpty()) {
-            canvas.drawText("Tel: " + bill.businessDetails.phone, margin, y, paint);
-            y += lineHeight - 10;
+        // Low-RAM devices draw strips at half the memory; text keeps its look at 16 bits
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        Bitmap.Config stripConfig = activityManager != null && activityManager.isLowRamDevice()
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        String baseName = (bill.billNumber != null && !bill.billNumber.isEmpty())
+                ? "Bill_" + bill.billNumber
+                : "Bill_" + bill.billId;
+        String renderVersion;
+        InvoiceCache.Renderer renderer;
+        if (FORMAT_PNG.equals(format)) {
+            renderVersion = "png-" + LAYOUT_VERSION + "-" + stripConfig;
+            renderer = (b, file) -> writePng(b, file, stripConfig);
+        } else {
+            Bitmap.CompressFormat compressFormat = FORMAT_WEBP.equals(format)
+                    ? Bitmap.CompressFormat.WEBP : Bitmap.CompressFormat.JPEG;
+            renderVersion = format + "-" + LAYOUT_VERSION + "-q" + quality;
+            renderer = (b, file) -> writeCompressed(b, file, compressFormat, quality);
         }
+        return InvoiceCache.get(context, bill, baseName + getExtension(format), renderVersion, renderer);
+    }
 
-        if (bill.businessDetails.gstin != null && !bill.businessDetails.gstin.isEmpty()) {
-            canvas.drawText("GSTIN: " + bill.businessDetails.gstin, margin, y, paint);
-            y += lineHeight - 10;
+    /**
+     * @return MIME type of an image written by {@link #generateBillImage}
+     */
+    public static String getMimeType(File file) {
+        String name = file.getName();
+        if (name.endsWith(".webp")) {
+            return "image/webp";
         }
-
-        /* =========================
-            INVOICE HEADER - REPLACE THIS SECTION
-            ========================= */
-        y += 20;
-
-        // Invoice Header
-        paint.setTextSize(32);
-        paint.setFakeBoldText(true);
-        canvas.drawText("INVOICE", margin, y, paint);
-        y += lineHeight;
-
-        // Bill Number (UPDATED - use billNumber instead of billId)
-        paint.setTextSize(22);
-        paint.setFakeBoldText(false);
-        String invoiceNumber = (bill.billNumber != null && !bill.billNumber.isEmpty())
-                ? bill.billNumber
-                : bill.billId.substring(0, 8);
-        canvas.drawText("Bill #" + invoiceNumber, margin, y, paint);
-        y += lineHeight - 5;
-
-        // Date
-        SimpleDateFormat sdf = new SimpleDateFormat("dd MMM yyyy, hh:mm a", Locale.getDefault());
-        canvas.drawText("Date: " + sdf.format(new Date(bill.timestamp)), margin, y, paint);
-        y += lineHeight + 10;
-
-        /* =========================
-           CUSTOMER DETAILS BOX
-           ========================= */
-        paint.setStyle(Paint.Style.STROKE);
-        paint.setStrokeWidth(2);
-        Rect customerBox = new Rect(margin, y, 770, y + 150);
-        canvas.drawRect(customerBox, paint);
-
-        paint.setStyle(Paint.Style.FILL);
-        y += 35;
-
-        paint.setTextSize(26);
-        paint.setFakeBoldText(true);
-        canvas.drawText("Customer Details", margin + 15, y, paint);
-        y += lineHeight;
-
-        paint.setTextSize(22);
-        paint.setFakeBoldText(false);
-        canvas.drawText("Name: " + bill.customer.name, margin + 15, y, paint);
-        y += lineHeight - 5;
-        canvas.drawText("Phone: " + bill.customer.phone, margin + 15, y, paint);
-        y += lineHeight - 5;
-
-        if (bill.customer.email != null && !bill.customer.email.isEmpty()) {
-            canvas.drawText("Email: " + bill.customer.email, margin + 15, y, paint);
+        if (name.endsWith(".jpg")) {
+            return "image/jpeg";
         }
+        return "image/png";
+    }
 
-        y = customerBox.bottom + lineHeight * 2;
-
-        /* =========================
-           ITEMS SECTION
-           ========================= */
-        paint.setTextSize(26);
-        paint.setFakeBoldText(true);
-        canvas.drawText("Items:", margin, y, paint);
-        y += lineHeight;
-
-        // Draw line
-        paint.setStrokeWidth(3);
-        canvas.drawLine(margin, y, 770, y, paint);
-        y += 15;
-
-        // Table headers
-        paint.setTextSize(20);
-        canvas.drawText("Item", margin, y, paint);
-        canvas.drawText("Qty", 420, y, paint);
-        canvas.drawText("Price", 520, y, paint);
-        canvas.drawText("Subtotal", 640, y, paint);
-        y += 10;
-
-        paint.setStrokeWidth(2);
-        canvas.drawLine(margin, y, 770, y, paint);
-        y += 25;
-
-        // Items
-        paint.setFakeBoldText(false);
-        paint.setTextSize(18);
-        for (BillItem item : bill.items) {
-            String itemName = item.name.length() > 25 ? item.name.substring(0, 25) + "..." : item.name;
-            canvas.drawText(itemName, margin, y, paint);
-            canvas.drawText(String.valueOf(item.quantity), 420, y, paint);
-            canvas.drawText("₹" + String.format("%.2f", item.price), 520, y, paint);
-            canvas.drawText("₹" + String.format("%.2f", item.subtotal), 640, y, paint);
-            y += itemHeight;
+    /**
+     * Render a bill into a new PNG file, one strip at a time.
+     */
+    public static void writePng(Bill bill, File file, Bitmap.Config stripConfig) throws IOException {
+        InvoiceLayout.Styles styles = new InvoiceLayout.Styles();
+        InvoiceLayout layout = InvoiceLayout.build(bill, styles);
+        int width = Math.round(InvoiceLayout.WIDTH * SCALE);
+        int height = Math.round((layout.getFlowHeight() + BOTTOM_MARGIN) * SCALE);
+
+        Bitmap strip = BitmapPool.acquire(width, STRIP_HEIGHT, stripConfig);
+        int[] row = new int[width];
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+             PngStreamEncoder png = new PngStreamEncoder(out, width, height)) {
+            Canvas canvas = new Canvas(strip);
+            for (int top = 0; top < height; top += STRIP_HEIGHT) {
+                strip.eraseColor(Color.WHITE);
+                canvas.save();
+                canvas.translate(0, -top);
+                canvas.scale(SCALE, SCALE);
+                layout.drawFlow(canvas, styles, top / SCALE, (top + STRIP_HEIGHT) / SCALE);
+                canvas.restore();
+
+                int rows = Math.min(STRIP_HEIGHT, height - top);
+                for (int y = 0; y < rows; y++) {
+                    strip.getPixels(row, 0, width, 0, y, width, 1);
+                    png.writeRow(row, 0);
+                }
+            }
+            png.finish();
+        } finally {
+            BitmapPool.release(strip);
         }
+    }
 
-        y += 15;
-        paint.setStrokeWidth(3);
-        canvas.drawLine(margin, y, 770, y, paint);
-        y += lineHeight;
-
-        /* =========================
-           GST SUMMARY FROM FIREBASE
-           ========================= */
-        paint.setTextSize(20);
-        paint.setFakeBoldText(false);
-
-        // Subtotal
-        canvas.drawText("Subtotal:", 480, y, paint);
-        canvas.drawText("₹" + String.format("%.2f", bill.subtotal), 650, y, paint);
-        y += lineHeight - 5;
-
-        // CGST (using stored rate from Firebase)
-        canvas.drawText("CGST (" + String.format("%.1f", bill.cgstRate) + "%):", 480, y, paint);
-        canvas.drawText("₹" + String.format("%.2f", bill.cgst), 650, y, paint);
-        y += lineHeight - 5;
-
-        // SGST (using stored rate from Firebase)
-        canvas.drawText("SGST (" + String.format("%.1f", bill.sgstRate) + "%):", 480, y, paint);
-        canvas.drawText("₹" + String.format("%.2f", bill.sgst), 650, y, paint);
-        y += lineHeight;
-
-        /* =========================
-           TOTAL BOX
-           ========================= */
-        paint.setStyle(Paint.Style.FILL);
-        paint.setColor(Color.parseColor("#4CAF50"));
-        Rect totalBox = new Rect(margin, y - 25, 770, y + 30);
-        canvas.drawRect(totalBox, paint);
-
-        paint.setColor(Color.WHITE);
-        paint.setTextSize(28);
-        paint.setFakeBoldText(true);
-        canvas.drawText("Total:", margin + 20, y + 5, paint);
-        canvas.drawText("₹" + String.format("%.2f", bill.total), 650, y + 5, paint);
-
-        /* =========================
-           SAVE FILE
-           ========================= */
-        File dir = new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), "Cheeta/Bills");
-        if (!dir.exists()) {
-            dir.mkdirs();
+    /**
+     * Render a bill into a new WebP or JPEG file. Needs the whole image as one bitmap.
+     */
+    public static void writeCompressed(Bill bill, File file, Bitmap.CompressFormat format,
+                                       int quality) throws IOException {
+        InvoiceLayout.Styles styles = new InvoiceLayout.Styles();
+        InvoiceLayout layout = InvoiceLayout.build(bill, styles);
+        int width = Math.round(InvoiceLayout.WIDTH * SCALE);
+        int height = Math.round((layout.getFlowHeight() + BOTTOM_MARGIN) * SCALE);
+
+        // No alpha in either format, so 16 bits per pixel lose nothing worth keeping
+        Bitmap bitmap = BitmapPool.acquire(width, height, Bitmap.Config.RGB_565);
+        try {
+            bitmap.eraseColor(Color.WHITE);
+            Canvas canvas = new Canvas(bitmap);
+            canvas.scale(SCALE, SCALE);
+            layout.drawFlow(canvas, styles, 0, height / SCALE);
+
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                if (!bitmap.compress(format, quality, out)) {
+                    throw new IOException("Could not encode invoice image");
+                }
+            }
+        } finally {
+            BitmapPool.release(bitmap);
         }
+    }
 
-// Use bill number in filename (UPDATED)
-        String fileName = (bill.billNumber != null && !bill.billNumber.isEmpty())
-                ? "Bill_" + bill.billNumber + ".png"
-                : "Bill_" + bill.billId + "_" + System.currentTimeMillis() + ".png";
-
-        File file = new File(dir, fileName);
-
-        FileOutputStream fos = new FileOutputStream(file);
-        bitmap.compress(Bitmap.CompressFormat.PNG, 100, fos);
-        fos.close();
+    /* =========================
+       HELPERS
+       ========================= */
 
-        return file;
+    private static String getExtension(String format) {
+        if (FORMAT_WEBP.equals(format)) {
+            return ".webp";
+        }
+        if (FORMAT_JPEG.equals(format)) {
+            return ".jpg";
+        }
+        return ".png";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,210 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillItem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Generated invoice files, reused for as long as the bill and the renderer stay the same.
+ *
+ * Each file lives in a directory named after a hash of everything that shows in it: the
+ * bill's content, the renderer's version and options, the output name, and the locale and
+ * time zone used for dates. Sharing a bill again finds the same directory and returns the file
+ * without rendering. Changing the bill, a layout version or an option changes the hash, so
+ * stale files are never served; they are simply no longer found and age out once the
+ * cache passes {@link #MAX_BYTES}, least recently used first.
+ *
+ * Files keep their readable names (e.g. Invoice_OCT-26-0142.pdf), since that is what the
+ * recipient sees. Call from a background thread.
+ */
+public class InvoiceCache {
+
+    private static final String TAG = "InvoiceCache";
+
+    private static final String CACHE_DIR = "Cheeta/InvoiceCache";
+    private static final long MAX_BYTES = 50L * 1024 * 1024;
+
+    public interface Renderer {
+        /**
+         * Write the invoice to {@code out}, which does not exist yet.
+         */
+        void render(Bill bill, File out) throws IOException;
+    }
+
+    private InvoiceCache() {}
+
+    /**
+     * Get the invoice file for a bill, rendering it only on a miss.
+     *
+     * @param fileName      Name of the file as shared, which also selects the format
+     * @param renderVersion Everything else that changes the output: the renderer's layout
+     *                      version and any options such as quality
+     */
+    public static File get(Context context, Bill bill, String fileName, String renderVersion,
+                           Renderer renderer) throws IOException {
+        File root = getRoot(context);
+        File entryDir = new File(root, key(bill, fileName, renderVersion));
+        File file = new File(entryDir, fileName);
+        if (file.isFile()) {
+            // Marks the entry as recently used for pruning
+            entryDir.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+
+        if (!entryDir.isDirectory() && !entryDir.mkdirs()) {
+            throw new IOException("Cannot create " + entryDir);
+        }
+        // Render beside the final name and move it into place, so a crash or a concurrent
+        // render never leaves a partial file that later looks like a hit
+        File partial = new File(entryDir, fileName + "." + Thread.currentThread().getId() + ".part");
+        try {
+            renderer.render(bill, partial);
+            if (!partial.renameTo(file) && !file.isFile()) {
+                throw new IOException("Cannot move rendered invoice into " + file);
+            }
+        } finally {
+            partial.delete();
+        }
+
+        prune(root, entryDir);
+        return file;
+    }
+
+    /**
+     * Remove every cached invoice, e.g. when the user signs out.
+     */
+    public static void clear(Context context) {
+        File[] entries = getRoot(context).listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                deleteEntry(entry);
+            }
+        }
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static File getRoot(Context context) {
+        // External files, like the invoices before caching, so the FileProvider can share them
+        return new File(context.getExternalFilesDir(null), CACHE_DIR);
+    }
+
+    /**
+     * Hash of everything that can change the rendered file.
+     */
+    static String key(Bill bill, String fileName, String renderVersion) {
+        ContentHash hash = new ContentHash()
+                .add(fileName)
+                .add(renderVersion)
+                .add(Locale.getDefault().toLanguageTag())
+                .add(TimeZone.getDefault().getID())
+                .add(bill.billId)
+                .add(bill.billNumber)
+                .add(bill.timestamp)
+                .add(Money.ofRupees(bill.subtotal))
+                .add(Money.ofRupees(bill.cgst))
+                .add(Money.ofRupees(bill.sgst))
+                .add(Money.ofRupees(bill.total))
+                .add(Money.basisPoints(bill.cgstRate))
+                .add(Money.basisPoints(bill.sgstRate));
+
+        if (bill.customer != null) {
+            hash.add(bill.customer.name).add(bill.customer.phone).add(bill.customer.email);
+        } else {
+            hash.add(-1);
+        }
+
+        Bill.BusinessDetails business = bill.businessDetails;
+        if (business != null) {
+            hash.add(business.name).add(business.address).add(business.phone)
+                    .add(business.email).add(business.gstin);
+        } else {
+            hash.add(-1);
+        }
+
+        hash.add(bill.items.size());
+        for (BillItem line : bill.items) {
+            hash.add(line.id).add(line.name).add(line.pricePaise()).add(line.quantity);
+        }
+        return hash.toHex(32);
+    }
+
+    /**
+     * Delete least recently used entries until the cache fits, never the one just written.
+     */
+    private static void prune(File root, File keep) {
+        File[] entries = root.listFiles();
+        if (entries == null) {
+            return;
+        }
+        long[] sizes = new long[entries.length];
+        long total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            sizes[i] = sizeOf(entries[i]);
+            total += sizes[i];
+        }
+        if (total <= MAX_BYTES) {
+            return;
+        }
+
+        // lastModified is read once per entry; it is a file system call
+        long[] lastUsed = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            lastUsed[i] = entries[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastUsed[i]));
+
+        for (int i : order) {
+            if (total <= MAX_BYTES) {
+                break;
+            }
+            if (entries[i].equals(keep)) {
+                continue;
+            }
+            if (deleteEntry(entries[i])) {
+                total -= sizes[i];
+            }
+        }
+    }
+
+    private static long sizeOf(File entry) {
+        if (entry.isFile()) {
+            return entry.length();
+        }
+        long size = 0;
+        File[] files = entry.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private static boolean deleteEntry(File entry) {
+        File[] files = entry.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        boolean deleted = entry.delete();
+        if (!deleted) {
+            Log.w(TAG, "Could not delete cached invoice " + entry);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,441 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillItem;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An invoice measured and placed once, as display lists that any canvas can replay.
+ *
+ * Building the layout does all the text work: formatting dates and money, fitting text into
+ * its column and right-aligning amounts. The result is a set of {@link Block}s, each a
+ * list of draw operations relative to its own top edge with a fixed height:
+ * <pre>
+ *   header            business, invoice details, bill to / ship to
+ *   tableHeader       column titles between two rules
+ *   rows              one per line item
+ *   tableEnd          the rule closing the table
+ *   summary           totals and footer
+ *   continuation      short header for pages after the first
+ * </pre>
+ * Renderers only decide where blocks go: the PDF paginates them (see {@link PdfUtils}),
+ * the image stacks them (see {@link ImageUtils}). Coordinates are in PDF points on an A4
+ * width of {@link #WIDTH}; the image scales them.
+ *
+ * A layout and its {@link Styles} are not thread-safe; build one per render.
+ */
+public class InvoiceLayout {
+
+    public static final int WIDTH = 595;
+    public static final int MARGIN = 40;
+
+    // Text styles; see Styles for their sizes
+    public static final int STYLE_BODY = 0;
+    public static final int STYLE_BODY_BOLD = 1;
+    public static final int STYLE_HEADING = 2;
+    public static final int STYLE_BUSINESS = 3;
+    public static final int STYLE_TITLE = 4;
+    public static final int STYLE_TOTAL = 5;
+    public static final int STYLE_NOTE = 6;
+    public static final int STYLE_NOTE_BOLD = 7;
+    public static final int STYLE_PAGE_NUMBER = 8;
+
+    private static final float[] TEXT_SIZES = {11, 11, 12, 16, 26, 12, 10, 10, 9};
+    private static final boolean[] BOLD = {false, true, true, true, true, true, false, true, false};
+
+    private static final int ROW_HEIGHT = 18;
+    private static final int TABLE_HEADER_HEIGHT = 23;
+    private static final int TABLE_END_HEIGHT = 5;
+    // Tallest header: every business field and a customer email present, see buildHeader
+    private static final int MAX_HEADER_HEIGHT = 130 + 40 + 6 + 3 * 14 + 40;
+    // From the table end to the last footer line, see buildSummary
+    private static final int SUMMARY_HEIGHT = 30 + 3 * ROW_HEIGHT + 50 + 20;
+
+    // Table columns: left edges of text columns, right edges of amount columns
+    private static final int COL_ITEM = MARGIN;
+    private static final int COL_DESCRIPTION = 120;
+    private static final int COL_QTY = 330;
+    private static final int COL_PRICE_RIGHT = 455;
+    private static final int COL_TOTAL_RIGHT = WIDTH - MARGIN;
+    private static final int COL_SUMMARY_LABEL = 360;
+    // Right-hand invoice details in the header
+    private static final int COL_DETAILS_LABEL = WIDTH - 180;
+    private static final int COL_DETAILS_VALUE = WIDTH - 100;
+    private static final int COL_SHIP_TO = WIDTH / 2 + 10;
+
+    public final Block header;
+    public final Block tableHeader;
+    public final List<Block> rows;
+    public final Block tableEnd;
+    public final Block summary;
+    public final Block continuation;
+
+    /**
+     * Paints for each text style plus rules. Used both to measure while building and to
+     * draw while replaying, so measured widths always match what is drawn.
+     */
+    public static class Styles {
+        private final Paint[] textPaints = new Paint[TEXT_SIZES.length];
+        private final Paint linePaint = new Paint();
+
+        public Styles() {
+            for (int i = 0; i < TEXT_SIZES.length; i++) {
+                Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+                paint.setTextSize(TEXT_SIZES[i]);
+                paint.setFakeBoldText(BOLD[i]);
+                textPaints[i] = paint;
+            }
+            linePaint.setStrokeWidth(1);
+        }
+
+        public Paint text(int style) {
+            return textPaints[style];
+        }
+
+        public Paint line() {
+            return linePaint;
+        }
+    }
+
+    /**
+     * A fixed-height piece of the invoice and the operations that draw it.
+     */
+    public static class Block {
+        private static final int OP_TEXT = 0;
+        private static final int OP_RULE = 1;
+
+        public final int height;
+        private final List<Op> ops;
+
+        private Block(int height, List<Op> ops) {
+            this.height = height;
+            this.ops = ops;
+        }
+
+        /**
+         * Replay the block with its top edge at {@code top}.
+         */
+        public void draw(Canvas canvas, float top, Styles styles) {
+            for (int i = 0; i < ops.size(); i++) {
+                Op op = ops.get(i);
+                if (op.kind == OP_TEXT) {
+                    canvas.drawText(op.text, op.x, top + op.y, styles.text(op.style));
+                } else {
+                    canvas.drawLine(MARGIN, top + op.y, WIDTH - MARGIN, top + op.y, styles.line());
+                }
+            }
+        }
+    }
+
+    private static class Op {
+        final int kind;
+        final float x;
+        final float y;
+        final String text;
+        final int style;
+
+        Op(int kind, float x, float y, String text, int style) {
+            this.kind = kind;
+            this.x = x;
+            this.y = y;
+            this.text = text;
+            this.style = style;
+        }
+    }
+
+    private InvoiceLayout(Block header, Block tableHeader, List<Block> rows, Block tableEnd,
+                          Block summary, Block continuation) {
+        this.header = header;
+        this.tableHeader = tableHeader;
+        this.rows = rows;
+        this.tableEnd = tableEnd;
+        this.summary = summary;
+        this.continuation = continuation;
+    }
+
+    /**
+     * Lay out a bill. It must have business details and a customer.
+     */
+    public static InvoiceLayout build(Bill bill, Styles styles) {
+        String invoiceNumber = (bill.billNumber != null && !bill.billNumber.isEmpty())
+                ? bill.billNumber
+                : bill.billId.substring(0, 8);
+
+        List<Block> rows = new ArrayList<>(bill.items.size());
+        for (BillItem item : bill.items) {
+            rows.add(buildRow(item, styles));
+        }
+
+        return new InvoiceLayout(
+                buildHeader(bill, invoiceNumber, styles),
+                buildTableHeader(styles),
+                Collections.unmodifiableList(rows),
+                new BlockBuilder(styles).rule(TABLE_END_HEIGHT).build(TABLE_END_HEIGHT),
+                buildSummary(bill, styles),
+                buildContinuation(bill, invoiceNumber, styles));
+    }
+
+    /**
+     * @return Height of all blocks stacked on one page, as the image draws them
+     */
+    public int getFlowHeight() {
+        int height = header.height + tableHeader.height + tableEnd.height + summary.height;
+        for (int i = 0; i < rows.size(); i++) {
+            height += rows.get(i).height;
+        }
+        return height;
+    }
+
+    /**
+     * Upper bound of {@link #getFlowHeight} for a bill with this many lines, known without
+     * laying the bill out.
+     */
+    public static int maxFlowHeight(int lineCount) {
+        return MAX_HEADER_HEIGHT + TABLE_HEADER_HEIGHT + lineCount * ROW_HEIGHT
+                + TABLE_END_HEIGHT + SUMMARY_HEIGHT;
+    }
+
+    /**
+     * Replay the blocks stacked top to bottom, as on the image, skipping blocks that lie
+     * wholly outside {@code [from, to]}. Text may reach one row beyond its block, so the
+     * window is widened by that much.
+     */
+    public void drawFlow(Canvas canvas, Styles styles, float from, float to) {
+        from -= ROW_HEIGHT;
+        to += ROW_HEIGHT;
+        int y = 0;
+        y = drawIfVisible(header, canvas, styles, y, from, to);
+        y = drawIfVisible(tableHeader, canvas, styles, y, from, to);
+        for (int i = 0; i < rows.size() && y <= to; i++) {
+            y = drawIfVisible(rows.get(i), canvas, styles, y, from, to);
+        }
+        y = drawIfVisible(tableEnd, canvas, styles, y, from, to);
+        drawIfVisible(summary, canvas, styles, y, from, to);
+    }
+
+    /* =========================
+       BLOCKS
+       ========================= */
+
+    private static Block buildHeader(Bill bill, String invoiceNumber, Styles styles) {
+        BlockBuilder b = new BlockBuilder(styles);
+        Bill.BusinessDetails business = bill.businessDetails;
+        // Left column ends where the invoice details begin
+        float leftWidth = COL_DETAILS_LABEL - MARGIN - 10;
+
+        /* =========================
+           COMPANY HEADER (LEFT)
+           ========================= */
+        int y = 50;
+        b.text(MARGIN, y, business.name, STYLE_BUSINESS, leftWidth);
+        if (!isEmpty(business.address)) {
+            y += 18;
+            b.text(MARGIN, y, business.address, STYLE_BODY, leftWidth);
+        }
+        if (!isEmpty(business.phone)) {
+            y += 14;
+            b.text(MARGIN, y, "Phone: " + business.phone, STYLE_BODY, leftWidth);
+        }
+        if (!isEmpty(business.email)) {
+            y += 14;
+            b.text(MARGIN, y, "Email: " + business.email, STYLE_BODY, leftWidth);
+        }
+        if (!isEmpty(business.gstin)) {
+            y += 14;
+            b.text(MARGIN, y, "GSTIN: " + business.gstin, STYLE_BODY, leftWidth);
+        }
+
+        /* =========================
+           INVOICE HEADER (RIGHT)
+           ========================= */
+        float valueWidth = WIDTH - MARGIN - COL_DETAILS_VALUE;
+        SimpleDateFormat sdf = new SimpleDateFormat("dd MMM yyyy, hh:mm a", Locale.getDefault());
+        b.text(COL_DETAILS_LABEL, 50, "INVOICE", STYLE_TITLE, Float.MAX_VALUE);
+        b.text(COL_DETAILS_LABEL, 90, "Date:", STYLE_BODY, Float.MAX_VALUE);
+        b.text(COL_DETAILS_VALUE, 90, sdf.format(new Date(bill.timestamp)), STYLE_BODY, valueWidth);
+        b.text(COL_DETAILS_LABEL, 110, "Invoice #:", STYLE_BODY, Float.MAX_VALUE);
+        b.text(COL_DETAILS_VALUE, 110, invoiceNumber, STYLE_BODY, valueWidth);
+        b.text(COL_DETAILS_LABEL, 130, "Customer ID:", STYLE_BODY, Float.MAX_VALUE);
+        b.text(COL_DETAILS_VALUE, 130, nonNull(bill.customer.phone), STYLE_BODY, valueWidth);
+
+        /* =========================
+           BILL TO / SHIP TO
+           ========================= */
+        y = Math.max(y, 130) + 40;
+        float columnWidth = COL_SHIP_TO - MARGIN - 10;
+        b.text(MARGIN, y, "BILL TO:", STYLE_HEADING, Float.MAX_VALUE);
+        b.text(COL_SHIP_TO, y, "SHIP TO:", STYLE_HEADING, Float.MAX_VALUE);
+
+        List<String> customerLines = new ArrayList<>(3);
+        customerLines.add(nonNull(bill.customer.name));
+        customerLines.add(nonNull(bill.customer.phone));
+        if (!isEmpty(bill.customer.email)) {
+            customerLines.add(bill.customer.email);
+        }
+        y += 6;
+        for (String line : customerLines) {
+            y += 14;
+            b.text(MARGIN, y, line, STYLE_BODY, columnWidth);
+            b.text(COL_SHIP_TO, y, line, STYLE_BODY, columnWidth);
+        }
+
+        return b.build(y + 40);
+    }
+
+    private static Block buildContinuation(Bill bill, String invoiceNumber, Styles styles) {
+        BlockBuilder b = new BlockBuilder(styles);
+        b.text(MARGIN, 50, bill.businessDetails.name, STYLE_HEADING, COL_SHIP_TO - MARGIN - 10);
+        b.textRight(WIDTH - MARGIN, 50, "Invoice #: " + invoiceNumber + " (continued)", STYLE_BODY);
+        return b.build(80);
+    }
+
+    private static Block buildTableHeader(Styles styles) {
+        BlockBuilder b = new BlockBuilder(styles);
+        b.rule(0);
+        b.text(COL_ITEM, 15, "ITEM", STYLE_BODY_BOLD, Float.MAX_VALUE);
+        b.text(COL_DESCRIPTION, 15, "DESCRIPTION", STYLE_BODY_BOLD, Float.MAX_VALUE);
+        b.text(COL_QTY, 15, "QTY", STYLE_BODY_BOLD, Float.MAX_VALUE);
+        b.textRight(COL_PRICE_RIGHT, 15, "UNIT PRICE", STYLE_BODY_BOLD);
+        b.textRight(COL_TOTAL_RIGHT, 15, "TOTAL", STYLE_BODY_BOLD);
+        b.rule(TABLE_HEADER_HEIGHT);
+        return b.build(TABLE_HEADER_HEIGHT);
+    }
+
+    private static Block buildRow(BillItem item, Styles styles) {
+        BlockBuilder b = new BlockBuilder(styles);
+        String name = nonNull(item.name);
+        b.text(COL_ITEM, ROW_HEIGHT, name, STYLE_BODY, COL_DESCRIPTION - COL_ITEM - 8);
+        b.text(COL_DESCRIPTION, ROW_HEIGHT, name, STYLE_BODY, COL_QTY - COL_DESCRIPTION - 8);
+        b.text(COL_QTY, ROW_HEIGHT, String.valueOf(item.quantity), STYLE_BODY, Float.MAX_VALUE);
+        b.textRight(COL_PRICE_RIGHT, ROW_HEIGHT, formatMoney(item.price), STYLE_BODY);
+        b.textRight(COL_TOTAL_RIGHT, ROW_HEIGHT, formatMoney(item.subtotal), STYLE_BODY);
+        return b.build(ROW_HEIGHT);
+    }
+
+    private static Block buildSummary(Bill bill, Styles styles) {
+        BlockBuilder b = new BlockBuilder(styles);
+
+        /* =========================
+           TOTAL SUMMARY (RIGHT)
+           ========================= */
+        int y = 30;
+        b.text(COL_SUMMARY_LABEL, y, "SUBTOTAL:", STYLE_BODY, Float.MAX_VALUE);
+        b.textRight(COL_TOTAL_RIGHT, y, formatMoney(bill.subtotal), STYLE_BODY);
+
+        y += ROW_HEIGHT;
+        b.text(COL_SUMMARY_LABEL, y, "CGST (" + formatRate(bill.cgstRate) + "%):", STYLE_BODY, Float.MAX_VALUE);
+        b.textRight(COL_TOTAL_RIGHT, y, formatMoney(bill.cgst), STYLE_BODY);
+
+        y += ROW_HEIGHT;
+        b.text(COL_SUMMARY_LABEL, y, "SGST (" + formatRate(bill.sgstRate) + "%):", STYLE_BODY, Float.MAX_VALUE);
+        b.textRight(COL_TOTAL_RIGHT, y, formatMoney(bill.sgst), STYLE_BODY);
+
+        y += ROW_HEIGHT;
+        b.text(COL_SUMMARY_LABEL, y, "TOTAL:", STYLE_TOTAL, Float.MAX_VALUE);
+        b.textRight(COL_TOTAL_RIGHT, y, formatMoney(bill.total), STYLE_TOTAL);
+
+        /* =========================
+           FOOTER
+           ========================= */
+        y += 50;
+        b.text(MARGIN, y, "* This is a system generated invoice. Signature not required.",
+                STYLE_NOTE, Float.MAX_VALUE);
+
+        y += 20;
+        String thanks = "Thank You For Your Business!";
+        b.text((WIDTH - styles.text(STYLE_NOTE_BOLD).measureText(thanks)) / 2, y, thanks,
+                STYLE_NOTE_BOLD, Float.MAX_VALUE);
+        return b.build(y);
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    /**
+     * @return Top of the next block
+     */
+    private static int drawIfVisible(Block block, Canvas canvas, Styles styles, int y,
+                                     float from, float to) {
+        if (y + block.height >= from && y <= to) {
+            block.draw(canvas, y, styles);
+        }
+        return y + block.height;
+    }
+
+    /**
+     * Collects operations for one block, measuring text as it goes.
+     */
+    private static class BlockBuilder {
+        private final Styles styles;
+        private final List<Op> ops = new ArrayList<>();
+
+        BlockBuilder(Styles styles) {
+            this.styles = styles;
+        }
+
+        /**
+         * Left-aligned text, shortened with an ellipsis to fit {@code maxWidth}.
+         */
+        BlockBuilder text(float x, float y, String text, int style, float maxWidth) {
+            ops.add(new Op(Block.OP_TEXT, x, y, fit(text, styles.text(style), maxWidth), style));
+            return this;
+        }
+
+        BlockBuilder textRight(float right, float y, String text, int style) {
+            float width = styles.text(style).measureText(text);
+            ops.add(new Op(Block.OP_TEXT, right - width, y, text, style));
+            return this;
+        }
+
+        /**
+         * A rule across the content width.
+         */
+        BlockBuilder rule(float y) {
+            ops.add(new Op(Block.OP_RULE, 0, y, null, 0));
+            return this;
+        }
+
+        Block build(int height) {
+            return new Block(height, ops);
+        }
+    }
+
+    private static String fit(String text, Paint paint, float maxWidth) {
+        if (maxWidth == Float.MAX_VALUE || paint.measureText(text) <= maxWidth) {
+            return text;
+        }
+        String ellipsis = "…";
+        int count = paint.breakText(text, true, maxWidth - paint.measureText(ellipsis), null);
+        return text.substring(0, count) + ellipsis;
+    }
+
+    private static String formatMoney(double rupees) {
+        return "₹" + Money.formatRupees(rupees);
+    }
+
+    /**
+     * A rate such as 9 or 2.5, without trailing zeros.
+     */
+    private static String formatRate(float rate) {
+        return new BigDecimal(Float.toString(rate)).stripTrailingZeros().toPlainString();
+    }
+
+    private static boolean isEmpty(String text) {
+        return text == null || text.isEmpty();
+    }
+
+    private static String nonNull(String text) {
+        return text != null ? text : "";
+    }
+}
@@ -16,6 +16,9 @@ public class InvoiceSettings {
     private static final String KEY_CGST_RATE = "cgst_rate";
     private static final String KEY_SGST_RATE = "sgst_rate";
     private static final String KEY_SETTINGS_COMPLETED = "settings_completed";
+    private static final String KEY_BLOCK_OVERSELLING = "block_overselling";
+    private static final String KEY_IMAGE_FORMAT = "image_format";
+    private static final String KEY_IMAGE_QUALITY = "image_quality";
 
     // Default values
     private static final String DEFAULT_BUSINESS_NAME = "Your Business Name";
@@ -24,6 +27,7 @@ public class InvoiceSettings {
     private static final String DEFAULT_EMAIL = "";
     private static final String DEFAULT_GSTIN = "";
     private static final float DEFAULT_GST_RATE = 9.0f;
+    private static final int DEFAULT_IMAGE_QUALITY = 85;
 
     private static SharedPreferences getPrefs(Context context) {
         return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
@@ -63,6 +67,27 @@ public class InvoiceSettings {
         return getCGSTRate(context) + getSGSTRate(context);
     }
 
+    /**
+     * Whether a bill may only be saved if every line is covered by stock on hand.
+     */
+    public static boolean isOversellingBlocked(Context context) {
+        return getPrefs(context).getBoolean(KEY_BLOCK_OVERSELLING, false);
+    }
+
+    /**
+     * Format of shared invoice images, one of the {@code ImageUtils.FORMAT_*} values.
+     */
+    public static String getImageFormat(Context context) {
+        return getPrefs(context).getString(KEY_IMAGE_FORMAT, ImageUtils.FORMAT_PNG);
+    }
+
+    /**
+     * Quality from 1 to 100 for WebP and JPEG invoice images; PNG ignores it.
+     */
+    public static int getImageQuality(Context context) {
+        return getPrefs(context).getInt(KEY_IMAGE_QUALITY, DEFAULT_IMAGE_QUALITY);
+    }
+
     public static boolean isSettingsCompleted(Context context) {
         return getPrefs(context).getBoolean(KEY_SETTINGS_COMPLETED, false);
     }
@@ -101,6 +126,20 @@ public class InvoiceSettings {
         }
     }
 
+    public static void setOversellingBlocked(Context context, boolean blocked) {
+        getPrefs(context).edit().putBoolean(KEY_BLOCK_OVERSELLING, blocked).apply();
+    }
+
+    public static void setImageFormat(Context context, String format) {
+        getPrefs(context).edit().putString(KEY_IMAGE_FORMAT, format).apply();
+    }
+
+    public static void setImageQuality(Context context, int quality) {
+        if (isValidImageQuality(quality)) {
+            getPrefs(context).edit().putInt(KEY_IMAGE_QUALITY, quality).apply();
+        }
+    }
+
     public static void setSettingsCompleted(Context context, boolean completed) {
         getPrefs(context).edit().putBoolean(KEY_SETTINGS_COMPLETED, completed).apply();
     }
@@ -174,6 +213,17 @@ public class InvoiceSettings {
         return null;
     }
 
+    public static boolean isValidImageQuality(int quality) {
+        return quality >= 1 && quality <= 100;
+    }
+
+    public static String validateImageQuality(int quality) {
+        if (!isValidImageQuality(quality)) {
+            return "Quality must be between 1 and 100";
+        }
+        return null;
+    }
+
     // ========== Helper Methods ==========
 
     public static boolean hasMinimumSettings(Context context) {
@@ -0,0 +1,299 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.ranoshisdas.app.cheeta.models.Item;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide copy of the signed-in user's inventory (users/{uid}/items).
+ *
+ * One snapshot listener keeps the catalog current for as long as the process lives, so
+ * screens read it synchronously instead of downloading the collection on every open. Only
+ * changed documents are applied. Firestore's on-disk cache serves the first snapshot after
+ * a restart, which works offline and costs no reads for unchanged items.
+ *
+ * The type-ahead index is rebuilt on a background thread, and only when item names, codes
+ * or membership change; price and stock updates reuse the existing index and order.
+ * Exact code lookups, as used by barcode scans, go through a hash map kept current per
+ * change.
+ * All methods must be called on the main thread.
+ */
+public class ItemCatalog {
+
+    private static final String TAG = "ItemCatalog";
+
+    private static ItemCatalog instance;
+
+    private final Map<String, Item> itemsById = new HashMap<>();
+    private final Map<String, Item> itemsByCode = new HashMap<>();  // Keyed by normalizeCode
+    private final List<OnCatalogChangedListener> listeners = new ArrayList<>();
+    private final List<Runnable> loadCallbacks = new ArrayList<>();
+    private List<Item> sortedItems = Collections.emptyList();
+    private ItemSearchIndex searchIndex = new ItemSearchIndex(Collections.emptyList());
+
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped per rebuild so an older index finishing late is not installed
+    private int indexGeneration = 0;
+
+    private String userId;
+    private ListenerRegistration registration;
+    private boolean loaded = false;
+
+    public interface OnCatalogChangedListener {
+        /**
+         * Called on the main thread with all items sorted by name.
+         */
+        void onCatalogChanged(List<Item> items);
+    }
+
+    public static synchronized ItemCatalog getInstance() {
+        if (instance == null) {
+            instance = new ItemCatalog();
+        }
+        return instance;
+    }
+
+    private ItemCatalog() {}
+
+    /**
+     * The catalog for the signed-in user, starting its listener if needed.
+     */
+    public static ItemCatalog forCurrentUser() {
+        ItemCatalog catalog = getInstance();
+        catalog.start(FirebaseUtil.auth().getCurrentUser().getUid());
+        return catalog;
+    }
+
+    /**
+     * Start listening for the user's items. Does nothing if already listening for them.
+     */
+    public void start(String userId) {
+        if (registration != null && userId.equals(this.userId)) {
+            return;
+        }
+        stop();
+        this.userId = userId;
+
+        registration = FirebaseUtil.db().collection("users")
+                .document(userId)
+                .collection("items")
+                .addSnapshotListener((snapshots, e) -> {
+                    if (e != null || snapshots == null) {
+                        Log.w(TAG, "Catalog updates stopped", e);
+                        return;
+                    }
+
+                    boolean reorder = false;
+                    boolean reindex = false;
+                    for (DocumentChange change : snapshots.getDocumentChanges()) {
+                        QueryDocumentSnapshot doc = change.getDocument();
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            unindexCode(itemsById.remove(doc.getId()));
+                            reorder = true;
+                            reindex = true;
+                        } else {
+                            Item item = doc.toObject(Item.class);
+                            item.id = doc.getId();
+                            Item previous = itemsById.put(item.id, item);
+                            unindexCode(previous);
+                            indexCode(item);
+                            boolean renamed = previous == null
+                                    || !Objects.equals(previous.name, item.name);
+                            reorder |= renamed;
+                            reindex |= renamed || !Objects.equals(previous.code, item.code);
+                        }
+                    }
+                    loaded = true;
+                    publish(reorder, reindex);
+
+                    List<Runnable> callbacks = new ArrayList<>(loadCallbacks);
+                    loadCallbacks.clear();
+                    for (Runnable callback : callbacks) {
+                        callback.run();
+                    }
+                });
+    }
+
+    /**
+     * Stop listening and forget all items, e.g. when the user signs out.
+     */
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        userId = null;
+        loaded = false;
+        loadCallbacks.clear();
+        itemsById.clear();
+        itemsByCode.clear();
+        sortedItems = Collections.emptyList();
+        searchIndex = new ItemSearchIndex(sortedItems);
+        indexGeneration++;
+    }
+
+    /**
+     * @return Whether the first snapshot has arrived
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Run {@code action} once the first snapshot has arrived: now if it has, otherwise when
+     * it does. Pending actions are dropped by {@link #stop}.
+     */
+    public void whenLoaded(Runnable action) {
+        if (loaded) {
+            action.run();
+            return;
+        }
+        loadCallbacks.add(action);
+    }
+
+    /**
+     * @return All items sorted by name; unmodifiable and safe to keep
+     */
+    public List<Item> getItems() {
+        return sortedItems;
+    }
+
+    public Item getItem(String itemId) {
+        return itemsById.get(itemId);
+    }
+
+    /**
+     * Exact lookup by SKU or barcode; case and surrounding whitespace are ignored.
+     *
+     * @return The item with this code, or null if there is none
+     */
+    public Item findByCode(String code) {
+        String key = normalizeCode(code);
+        return key != null ? itemsByCode.get(key) : null;
+    }
+
+    /**
+     * Type-ahead search over item names and codes.
+     *
+     * @return Current versions of the best matching items, best first
+     */
+    public List<Item> search(String query, int limit) {
+        List<Item> results = new ArrayList<>();
+        for (String itemId : searchIndex.search(query, limit)) {
+            // Skips items deleted since the index was built
+            Item item = itemsById.get(itemId);
+            if (item != null) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Deliver the catalog to {@code listener} now if loaded and on every change until
+     * {@code owner} is destroyed.
+     */
+    public void observe(LifecycleOwner owner, OnCatalogChangedListener listener) {
+        listeners.add(listener);
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner o) {
+                listeners.remove(listener);
+                o.getLifecycle().removeObserver(this);
+            }
+        });
+
+        if (loaded) {
+            listener.onCatalogChanged(sortedItems);
+        }
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private void indexCode(Item item) {
+        String key = normalizeCode(item.code);
+        if (key != null) {
+            itemsByCode.put(key, item);
+        }
+    }
+
+    private void unindexCode(Item item) {
+        String key = item != null ? normalizeCode(item.code) : null;
+        // Another item may have taken over a duplicate code
+        if (key != null && itemsByCode.get(key) == item) {
+            itemsByCode.remove(key);
+        }
+    }
+
+    private static String normalizeCode(String code) {
+        if (code == null) {
+            return null;
+        }
+        String key = code.trim().toUpperCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+
+    /**
+     * @param reorder Whether items were added, removed or renamed. If not, the previous
+     *                order still holds and only the changed items are swapped in, so a
+     *                price or stock update costs no sort
+     */
+    private void publish(boolean reorder, boolean reindex) {
+        List<Item> items;
+        if (reorder) {
+            items = new ArrayList<>(itemsById.values());
+            Collections.sort(items, (a, b) -> compareNames(a.name, b.name));
+        } else {
+            items = new ArrayList<>(sortedItems.size());
+            for (Item item : sortedItems) {
+                items.add(itemsById.get(item.id));
+            }
+        }
+        sortedItems = Collections.unmodifiableList(items);
+
+        if (reindex) {
+            int generation = ++indexGeneration;
+            List<Item> snapshot = sortedItems;
+            indexExecutor.execute(() -> {
+                ItemSearchIndex index = new ItemSearchIndex(snapshot);
+                mainHandler.post(() -> {
+                    if (generation == indexGeneration) {
+                        searchIndex = index;
+                    }
+                });
+            });
+        }
+
+        for (OnCatalogChangedListener listener : new ArrayList<>(listeners)) {
+            listener.onCatalogChanged(sortedItems);
+        }
+    }
+
+    private static int compareNames(String a, String b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return a.compareToIgnoreCase(b);
+    }
+}
@@ -0,0 +1,273 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.Item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable prefix index over item names and codes for type-ahead search.
+ *
+ * Every word of an item's name and code, and the code with punctuation removed, is a
+ * lowercase token. All tokens are kept in one sorted array, so the items having a token
+ * that starts with some prefix form a contiguous range found by binary search.
+ *
+ * A query matches an item when every query word is a prefix of one of the item's tokens;
+ * candidates come from the narrowest word's range. Results are ranked: exact code first,
+ * then names starting with the query, then other word matches; shorter names first within
+ * a rank. Only the best {@code limit} are kept while scanning, so broad one-letter queries
+ * never sort the whole catalog.
+ *
+ * The index keeps item IDs, names and codes only, so price and stock changes do not need a
+ * rebuild; callers resolve the returned IDs to current items.
+ */
+public class ItemSearchIndex {
+
+    private static final int RANK_EXACT_CODE = 0;
+    private static final int RANK_NAME_PREFIX = 1;
+    private static final int RANK_WORD_PREFIX = 2;
+
+    private final String[] ids;
+    private final String[] codes;          // Lowercase codes, or null
+    private final String[] names;          // Lowercase full names
+    private final String[][] itemTokens;   // Tokens per item, for checking further query words
+    private final String[] tokens;         // All tokens, sorted
+    private final int[] tokenItems;        // Item slot of each entry in tokens
+
+    // Scratch state for search; the index is only searched from one thread at a time
+    private final int[] seenStamp;
+    private int stamp = 0;
+
+    public ItemSearchIndex(List<Item> catalog) {
+        int count = catalog.size();
+        ids = new String[count];
+        codes = new String[count];
+        names = new String[count];
+        itemTokens = new String[count][];
+        seenStamp = new int[count];
+
+        List<TokenEntry> entries = new ArrayList<>();
+        for (int slot = 0; slot < count; slot++) {
+            Item item = catalog.get(slot);
+            ids[slot] = item.id;
+            codes[slot] = item.code != null ? item.code.toLowerCase() : null;
+            names[slot] = item.name != null ? item.name.toLowerCase() : "";
+
+            List<String> words = splitWords(names[slot]);
+            if (codes[slot] != null) {
+                List<String> codeWords = splitWords(codes[slot]);
+                words.addAll(codeWords);
+                if (codeWords.size() > 1) {
+                    words.add(String.join("", codeWords));
+                }
+            }
+            itemTokens[slot] = words.toArray(new String[0]);
+            for (String word : words) {
+                entries.add(new TokenEntry(word, slot));
+            }
+        }
+
+        TokenEntry[] sorted = entries.toArray(new TokenEntry[0]);
+        Arrays.sort(sorted, (a, b) -> a.token.compareTo(b.token));
+
+        tokens = new String[sorted.length];
+        tokenItems = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            tokens[i] = sorted[i].token;
+            tokenItems[i] = sorted[i].slot;
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Find items matching every word of the query, best matches first.
+     *
+     * @param query Text as typed; case and punctuation are ignored
+     * @param limit Maximum number of results
+     * @return IDs of the ranked matches; empty for a blank query
+     */
+    public List<String> search(String query, int limit) {
+        List<String> words = splitWords(query == null ? "" : query.toLowerCase());
+        List<String> results = new ArrayList<>();
+        if (words.isEmpty() || ids.length == 0) {
+            return results;
+        }
+
+        // Drive the search from the query word with the fewest tokens
+        int driver = -1;
+        int from = 0;
+        int to = 0;
+        for (int w = 0; w < words.size(); w++) {
+            int lo = lowerBound(words.get(w));
+            int hi = upperBound(words.get(w), lo);
+            if (driver < 0 || hi - lo < to - from) {
+                driver = w;
+                from = lo;
+                to = hi;
+            }
+        }
+
+        // Each score packs rank, name length and slot into one long, so smaller is better
+        // and the best results are kept in a bounded max-heap
+        String compact = query.trim().toLowerCase();
+        long[] heap = new long[Math.max(limit, 1)];
+        int heapSize = 0;
+
+        stamp++;
+        for (int i = from; i < to; i++) {
+            int slot = tokenItems[i];
+            if (seenStamp[slot] == stamp) {
+                continue; // Item has several tokens with this prefix
+            }
+            seenStamp[slot] = stamp;
+            if (!matchesOthers(slot, words, driver)) {
+                continue;
+            }
+
+            long score = (long) rank(slot, compact) << 52 | (long) names[slot].length() << 24 | slot;
+            if (heapSize < limit) {
+                heap[heapSize] = score;
+                siftUp(heap, heapSize++);
+            } else if (limit > 0 && score < heap[0]) {
+                heap[0] = score;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        Arrays.sort(heap, 0, heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            results.add(ids[(int) (heap[i] & 0xFFFFFF)]);
+        }
+        return results;
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private int rank(int slot, String compact) {
+        if (compact.equals(codes[slot])) {
+            return RANK_EXACT_CODE;
+        }
+        if (names[slot].startsWith(compact)) {
+            return RANK_NAME_PREFIX;
+        }
+        return RANK_WORD_PREFIX;
+    }
+
+    private boolean matchesOthers(int slot, List<String> words, int skip) {
+        String[] own = itemTokens[slot];
+        outer:
+        for (int w = 0; w < words.size(); w++) {
+            if (w == skip) {
+                continue;
+            }
+            String word = words.get(w);
+            for (String token : own) {
+                if (token.startsWith(word)) {
+                    continue outer;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * First token index that is >= prefix.
+     */
+    private int lowerBound(String prefix) {
+        int lo = 0;
+        int hi = tokens.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tokens[mid].compareTo(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First token index at or after {@code from} that does not start with prefix.
+     */
+    private int upperBound(String prefix, int from) {
+        int lo = from;
+        int hi = tokens.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tokens[mid].startsWith(prefix)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] >= heap[index]) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[index] >= heap[child]) {
+                return;
+            }
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(long[] heap, int a, int b) {
+        long tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    private static class TokenEntry {
+        final String token;
+        final int slot;
+
+        TokenEntry(String token, int slot) {
+            this.token = token;
+            this.slot = slot;
+        }
+    }
+
+    private static List<String> splitWords(String text) {
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i > start) {
+                words.add(text.substring(start, i));
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,151 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+/**
+ * Money as a primitive {@code long} count of paise.
+ *
+ * All billing arithmetic happens on paise so sums are exact and nothing is allocated.
+ * Firestore documents keep amounts as rupee doubles for compatibility with existing bills;
+ * convert with {@link #ofRupees(double)} when reading and {@link #toRupees(long)} when
+ * writing. A stored value written from paise always converts back to the same paise.
+ *
+ * Rounding rule: anything finer than a paisa is rounded half away from zero.
+ */
+public final class Money {
+
+    private static final int PAISE_PER_RUPEE = 100;
+    private static final int BASIS_POINTS_PER_UNIT = 10000;
+
+    private Money() {}
+
+    /**
+     * @param rupees An amount as stored in Firestore or typed by the user
+     * @return The amount in paise, rounded half away from zero to the paisa
+     */
+    public static long ofRupees(double rupees) {
+        double paise = rupees * PAISE_PER_RUPEE;
+        // Math.round alone would round negative halves up, e.g. -0.5 to 0
+        return paise >= 0 ? Math.round(paise) : -Math.round(-paise);
+    }
+
+    public static double toRupees(long paise) {
+        return paise / (double) PAISE_PER_RUPEE;
+    }
+
+    /**
+     * Price of {@code quantity} units. Exact; throws if the result overflows.
+     */
+    public static long times(long paise, int quantity) {
+        return Math.multiplyExact(paise, (long) quantity);
+    }
+
+    /**
+     * A percentage rate such as 9.0 or 2.5 in basis points (hundredths of a percent).
+     * Rates are stored as floats, so they are rounded to the nearest basis point first.
+     */
+    public static int basisPoints(float percent) {
+        return Math.round(percent * 100);
+    }
+
+    /**
+     * {@code paise × basisPoints / 10000}, rounded half away from zero to the paisa.
+     */
+    public static long percentOf(long paise, int basisPoints) {
+        long scaled = Math.multiplyExact(paise, (long) basisPoints);
+        long half = BASIS_POINTS_PER_UNIT / 2;
+        return scaled >= 0
+                ? (scaled + half) / BASIS_POINTS_PER_UNIT
+                : -((-scaled + half) / BASIS_POINTS_PER_UNIT);
+    }
+
+    /**
+     * Parse a rupee amount typed by the user, e.g. "120", "99.5" or "1,250.00", without
+     * going through a double. More than two decimals are rounded half away from zero to the
+     * paisa.
+     *
+     * @throws NumberFormatException If the text is not a plain decimal number, or too large
+     */
+    public static long parse(String text) {
+        try {
+            return parseChecked(text);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount too large: " + text);
+        }
+    }
+
+    /**
+     * Format as rupees with exactly two decimals and no currency symbol, e.g. "1250.50".
+     */
+    public static String format(long paise) {
+        return appendTo(new StringBuilder(16), paise).toString();
+    }
+
+    /**
+     * Shorthand for formatting an amount stored as rupees.
+     */
+    public static String formatRupees(double rupees) {
+        return format(ofRupees(rupees));
+    }
+
+    /**
+     * Append the same text as {@link #format(long)} to a reusable builder.
+     */
+    public static StringBuilder appendTo(StringBuilder out, long paise) {
+        if (paise < 0) {
+            out.append('-');
+            paise = -paise;
+        }
+        long fraction = paise % PAISE_PER_RUPEE;
+        out.append(paise / PAISE_PER_RUPEE).append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static long parseChecked(String text) {
+        String s = text.trim().replace(",", "");
+        boolean negative = s.startsWith("-");
+        if (negative || s.startsWith("+")) {
+            s = s.substring(1);
+        }
+
+        int dot = s.indexOf('.');
+        String whole = dot >= 0 ? s.substring(0, dot) : s;
+        String fraction = dot >= 0 ? s.substring(dot + 1) : "";
+        if (whole.isEmpty() && fraction.isEmpty()) {
+            throw new NumberFormatException("Not an amount: " + text);
+        }
+
+        long paise = Math.multiplyExact(digits(whole, text), (long) PAISE_PER_RUPEE);
+        for (int i = 0; i < fraction.length(); i++) {
+            int digit = digit(fraction.charAt(i), text);
+            if (i == 0) {
+                paise = Math.addExact(paise, digit * 10L);
+            } else if (i == 1) {
+                paise = Math.addExact(paise, digit);
+            } else if (i == 2 && digit >= 5) {
+                paise = Math.addExact(paise, 1);
+            }
+        }
+        return negative ? -paise : paise;
+    }
+
+    private static long digits(String s, String original) {
+        long value = 0;
+        for (int i = 0; i < s.length(); i++) {
+            value = Math.addExact(Math.multiplyExact(value, 10L), digit(s.charAt(i), original));
+        }
+        return value;
+    }
+
+    private static int digit(char c, String original) {
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not an amount: " + original);
+        }
+        return c - '0';
+    }
+}
@@ -0,0 +1,134 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes an opaque RGB PNG one row at a time, so an image never has to exist in memory as
+ * a whole. {@link android.graphics.Bitmap#compress} needs the complete bitmap; this lets a
+ * renderer draw a tall image in strips and hand each strip's rows over as it goes.
+ *
+ * Rows use the PNG "Sub" filter, which suits text on a flat background, and are deflated
+ * straight into IDAT chunks. Memory use is a few rows plus the deflater's window.
+ */
+public class PngStreamEncoder implements AutoCloseable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte FILTER_SUB = 1;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final CRC32 crc = new CRC32();
+    private final byte[] row;                   // Filter byte + RGB triplets
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private int rowsWritten = 0;
+    private boolean finished = false;
+
+    public PngStreamEncoder(OutputStream out, int width, int height) throws IOException {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + width * 3];
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;      // Bits per channel
+        header[9] = 2;      // Colour type: RGB
+        // Compression, filter method and interlace are all 0
+        writeChunk("IHDR", header, header.length);
+    }
+
+    /**
+     * Append one row of pixels as returned by {@link android.graphics.Bitmap#getPixels};
+     * alpha is ignored.
+     *
+     * @param offset Index of the row's first pixel in {@code pixels}
+     */
+    public void writeRow(int[] pixels, int offset) throws IOException {
+        if (rowsWritten == height) {
+            throw new IllegalStateException("All " + height + " rows already written");
+        }
+        row[0] = FILTER_SUB;
+        int previous = 0;
+        for (int x = 0, i = 1; x < width; x++, i += 3) {
+            int pixel = pixels[offset + x];
+            row[i] = (byte) ((pixel >> 16) - (previous >> 16));
+            row[i + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+            row[i + 2] = (byte) (pixel - previous);
+            previous = pixel;
+        }
+        deflater.setInput(row);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+        rowsWritten++;
+    }
+
+    /**
+     * Flush the compressed data and write the end of the image. Does not close the stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (rowsWritten != height) {
+            throw new IllegalStateException("Wrote " + rowsWritten + " of " + height + " rows");
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            drain();
+        }
+        writeChunk("IEND", chunk, 0);
+        finished = true;
+    }
+
+    /**
+     * Release the deflater. Call {@link #finish} first for a complete image.
+     */
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private void drain() throws IOException {
+        int length = deflater.deflate(chunk);
+        if (length > 0) {
+            writeChunk("IDAT", chunk, length);
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] prefix = new byte[8];
+        putInt(prefix, 0, length);
+        for (int i = 0; i < 4; i++) {
+            prefix[4 + i] = (byte) type.charAt(i);
+        }
+        out.write(prefix);
+        out.write(data, 0, length);
+
+        crc.reset();
+        crc.update(prefix, 4, 4);
+        crc.update(data, 0, length);
+        byte[] checksum = new byte[4];
+        putInt(checksum, 0, (int) crc.getValue());
+        out.write(checksum);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
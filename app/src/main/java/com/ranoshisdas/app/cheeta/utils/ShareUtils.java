@@ -7,6 +7,8 @@ import android.net.Uri;
 import androidx.core.content.FileProvider;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ShareUtils {
 
@@ -25,4 +27,29 @@ public class ShareUtils {
         context.startActivity(Intent.createChooser(intent, "Share Bill"));
     }
 
+    /**
+     * Share several files of one type at once, e.g. an export split into parts.
+     */
+    public static void shareFiles(Context context, List<File> files, String mime) {
+        if (files.size() == 1) {
+            shareFile(context, files.get(0), mime);
+            return;
+        }
+        ArrayList<Uri> uris = new ArrayList<>(files.size());
+        for (File file : files) {
+            uris.add(FileProvider.getUriForFile(
+                    context,
+                    context.getPackageName() + ".provider",
+                    file
+            ));
+        }
+
+        Intent intent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+        intent.setType(mime);
+        intent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, uris);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        context.startActivity(Intent.createChooser(intent, "Share Bills"));
+    }
+
 }
@@ -0,0 +1,42 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Hands out collision-free RecyclerView stable IDs for arbitrary keys.
+ * The same key always maps to the same ID for the lifetime of this object.
+ */
+public class StableIds<K> {
+
+    private final Map<K, Long> ids;
+    private long nextId = 1;
+
+    private StableIds(Map<K, Long> ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * IDs keyed by value equality, e.g. Firestore document IDs.
+     */
+    public static <K> StableIds<K> byKey() {
+        return new StableIds<>(new HashMap<>());
+    }
+
+    /**
+     * IDs keyed by object identity, for rows that have no unique key of their own.
+     */
+    public static <K> StableIds<K> byIdentity() {
+        return new StableIds<>(new IdentityHashMap<>());
+    }
+
+    public long idFor(K key) {
+        Long id = ids.get(key);
+        if (id == null) {
+            id = nextId++;
+            ids.put(key, id);
+        }
+        return id;
+    }
+}
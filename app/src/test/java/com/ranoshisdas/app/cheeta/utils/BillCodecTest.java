@@ -0,0 +1,280 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillItem;
+import com.ranoshisdas.app.cheeta.models.Customer;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BillCodecTest {
+
+    @Test
+    public void encode_usesCompactLayout() {
+        Map<String, Object> data = BillCodec.encode(sampleBill());
+        assertEquals(BillCodec.VERSION, data.get("v"));
+        assertEquals("JAN-26-007", data.get("n"));
+        assertEquals(1_700_000_000_000L, data.get("timestamp"));
+        assertEquals(Arrays.asList("Asha", "9876543210", null), data.get("c"));
+        assertEquals(Arrays.asList("i1", "Rice", 12_050L, 2, "i2", "Oil", 9_999L, 1), data.get("i"));
+        assertEquals(34_099L, data.get("s"));
+        assertEquals(852L, data.get("x"));      // 2.5% of 340.99 is 8.52475
+        assertEquals(852L, data.get("y"));
+        assertEquals(35_803L, data.get("t"));
+        assertEquals(Arrays.asList(250, 250), data.get("r"));
+        assertEquals(BillCodec.businessProfileId(sampleBill().businessDetails), data.get("b"));
+        assertFalse(data.containsKey("billId"));
+    }
+
+    @Test
+    public void decode_roundTripsEncodedBill() {
+        Bill original = sampleBill();
+        Bill decoded = BillCodec.decode("bill-1", BillCodec.encode(original));
+
+        assertBillEquals(original, decoded);
+        assertEquals("bill-1", decoded.billId);
+        assertNull(decoded.businessDetails); // Resolved separately from the profile ID
+    }
+
+    @Test
+    public void decode_recomputesLineAmounts() {
+        Bill decoded = BillCodec.decode("bill-1", BillCodec.encode(sampleBill()));
+        assertEquals(241.0, decoded.items.get(0).subtotal, 0);
+        assertEquals(99.99, decoded.items.get(1).subtotal, 0);
+    }
+
+    @Test
+    public void decode_acceptsAnyNumberType() {
+        // Firestore returns whole numbers as Long; values built elsewhere may be Integer
+        Map<String, Object> data = BillCodec.encode(sampleBill());
+        data.put("v", 1L);
+        data.put("q", 7);
+        data.put("t", 35_803);
+        data.put("r", Arrays.asList(250L, 250L));
+        Bill decoded = BillCodec.decode("bill-1", data);
+        assertEquals(7, decoded.billSequence);
+        assertEquals(358.03, decoded.total, 0);
+        assertEquals(2.5f, decoded.cgstRate, 0);
+    }
+
+    @Test
+    public void decode_withoutCustomerOrItems() {
+        Bill bill = sampleBill();
+        bill.customer = null;
+        bill.items = null;
+        Bill decoded = BillCodec.decode("bill-1", BillCodec.encode(bill));
+        assertNull(decoded.customer);
+        assertNotNull(decoded.items);
+        assertTrue(decoded.items.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsNewerLayout() {
+        Map<String, Object> data = BillCodec.encode(sampleBill());
+        data.put("v", BillCodec.VERSION + 1);
+        BillCodec.decode("bill-1", data);
+    }
+
+    @Test
+    public void json_roundTripsBillWithBusinessDetails() throws JSONException {
+        Bill original = sampleBill();
+        Bill decoded = BillCodec.fromJson("bill-1", BillCodec.toJson(original));
+
+        assertBillEquals(original, decoded);
+        assertNotNull(decoded.businessDetails);
+        assertEquals("Cheeta Stores", decoded.businessDetails.name);
+        assertEquals("22AAAAA0000A1Z5", decoded.businessDetails.gstin);
+        assertNull(decoded.businessDetails.email);
+    }
+
+    @Test
+    public void json_roundTripsBillWithoutOptionalParts() throws JSONException {
+        Bill bill = sampleBill();
+        bill.businessDetails = null;
+        bill.customer = null;
+        bill.billNumber = null;
+        Bill decoded = BillCodec.fromJson("bill-1", BillCodec.toJson(bill));
+        assertNull(decoded.businessDetails);
+        assertNull(decoded.customer);
+        assertNull(decoded.billNumber);
+        assertEquals(bill.total, decoded.total, 0);
+    }
+
+    @Test(expected = JSONException.class)
+    public void fromJson_rejectsMalformedText() throws JSONException {
+        BillCodec.fromJson("bill-1", "{not json");
+    }
+
+    @Test
+    public void businessProfileId_dependsOnlyOnContent() {
+        Bill.BusinessDetails a = new Bill.BusinessDetails("Shop", "Road 1", "123", null, "GST");
+        Bill.BusinessDetails b = new Bill.BusinessDetails("Shop", "Road 1", "123", null, "GST");
+        Bill.BusinessDetails moved = new Bill.BusinessDetails("Shop", "Road 2", "123", null, "GST");
+        assertEquals(BillCodec.businessProfileId(a), BillCodec.businessProfileId(b));
+        assertNotEquals(BillCodec.businessProfileId(a), BillCodec.businessProfileId(moved));
+        assertEquals(32, BillCodec.businessProfileId(a).length());
+    }
+
+    @Test
+    public void fromLegacyData_readsFullFieldNames() {
+        Bill decoded = BillCompatibilityHelper.fromLegacyData("old-1", legacyDocument());
+
+        assertEquals("old-1", decoded.billId);
+        assertEquals("DEC-25-042", decoded.billNumber);
+        assertEquals(42, decoded.billSequence);
+        assertEquals("2025-12", decoded.billMonth);
+        assertEquals(1_690_000_000_000L, decoded.timestamp);
+        assertEquals("Ravi", decoded.customer.name);
+        assertEquals("ravi@example.com", decoded.customer.email);
+        assertEquals(1, decoded.items.size());
+        BillItem line = decoded.items.get(0);
+        assertEquals("i9", line.id);
+        assertEquals(55.5, line.price, 0);
+        assertEquals(3, line.quantity);
+        assertEquals(166.5, line.subtotal, 0);
+        assertEquals(166.5, decoded.subtotal, 0);
+        assertEquals(14.99, decoded.cgst, 0);
+        assertEquals(196.48, decoded.total, 0);
+        assertEquals(9f, decoded.cgstRate, 0);
+        assertEquals("Old Shop", decoded.businessDetails.name);
+    }
+
+    @Test
+    public void fromLegacyData_keepsDefaultsForMissingFields() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("total", 10L);
+        Bill decoded = BillCompatibilityHelper.fromLegacyData("old-2", data);
+
+        assertEquals("old-2", decoded.billId);
+        assertEquals(10.0, decoded.total, 0);
+        assertNull(decoded.billNumber);
+        assertNull(decoded.customer);
+        assertNull(decoded.items);
+        assertNull(decoded.businessDetails);
+        assertEquals(0, decoded.timestamp);
+        assertEquals(0f, decoded.cgstRate, 0);
+    }
+
+    @Test
+    public void fromLegacyData_thenEncode_convertsToCurrentLayout() {
+        Bill legacy = BillCompatibilityHelper.fromLegacyData("old-1", legacyDocument());
+        Bill decoded = BillCodec.decode("old-1", BillCodec.encode(legacy));
+        assertBillEquals(legacy, decoded);
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static Bill sampleBill() {
+        Bill bill = new Bill();
+        bill.billId = "ignored";
+        bill.billNumber = "JAN-26-007";
+        bill.billSequence = 7;
+        bill.billMonth = "2026-01";
+        bill.timestamp = 1_700_000_000_000L;
+
+        bill.customer = new Customer();
+        bill.customer.name = "Asha";
+        bill.customer.phone = "9876543210";
+
+        bill.items = new ArrayList<>();
+        bill.items.add(line("i1", "Rice", 120.50, 2));
+        bill.items.add(line("i2", "Oil", 99.99, 1));
+
+        bill.cgstRate = 2.5f;
+        bill.sgstRate = 2.5f;
+        long subtotal = 0;
+        for (BillItem line : bill.items) {
+            subtotal += line.subtotalPaise();
+        }
+        BillTotals totals = new BillTotals().compute(subtotal, bill.cgstRate, bill.sgstRate);
+        bill.subtotal = Money.toRupees(totals.subtotal);
+        bill.cgst = Money.toRupees(totals.cgst);
+        bill.sgst = Money.toRupees(totals.sgst);
+        bill.total = Money.toRupees(totals.total);
+        bill.businessDetails = new Bill.BusinessDetails(
+                "Cheeta Stores", "MG Road", "080-1234", null, "22AAAAA0000A1Z5");
+        return bill;
+    }
+
+    private static BillItem line(String id, String name, double price, int quantity) {
+        BillItem line = new BillItem();
+        line.id = id;
+        line.name = name;
+        line.price = price;
+        line.quantity = quantity;
+        line.updateSubtotal();
+        return line;
+    }
+
+    /** A bill document as earlier app versions stored it, with Firestore's value types. */
+    private static Map<String, Object> legacyDocument() {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("name", "Ravi");
+        customer.put("phone", "9000000000");
+        customer.put("email", "ravi@example.com");
+
+        Map<String, Object> item = new HashMap<>();
+        item.put("id", "i9");
+        item.put("name", "Dal");
+        item.put("price", 55.5);
+        item.put("quantity", 3L);
+        item.put("subtotal", 166.5);
+
+        Map<String, Object> business = new HashMap<>();
+        business.put("name", "Old Shop");
+        business.put("phone", "111");
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("billId", "stale-id");
+        data.put("billNumber", "DEC-25-042");
+        data.put("billSequence", 42L);
+        data.put("billMonth", "2025-12");
+        data.put("timestamp", 1_690_000_000_000L);
+        data.put("customer", customer);
+        data.put("items", List.of(item));
+        data.put("subtotal", 166.5);
+        data.put("cgst", 14.99);
+        data.put("sgst", 14.99);
+        data.put("total", 196.48);
+        data.put("cgstRate", 9.0);
+        data.put("sgstRate", 9.0);
+        data.put("businessDetails", business);
+        return data;
+    }
+
+    private static void assertBillEquals(Bill expected, Bill actual) {
+        assertEquals(expected.billNumber, actual.billNumber);
+        assertEquals(expected.billSequence, actual.billSequence);
+        assertEquals(expected.billMonth, actual.billMonth);
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.customer.name, actual.customer.name);
+        assertEquals(expected.customer.phone, actual.customer.phone);
+        assertEquals(expected.customer.email, actual.customer.email);
+        assertEquals(expected.items.size(), actual.items.size());
+        for (int i = 0; i < expected.items.size(); i++) {
+            BillItem want = expected.items.get(i);
+            BillItem got = actual.items.get(i);
+            assertEquals(want.id, got.id);
+            assertEquals(want.name, got.name);
+            assertEquals(want.price, got.price, 0);
+            assertEquals(want.quantity, got.quantity);
+            assertEquals(want.subtotal, got.subtotal, 0);
+        }
+        assertEquals(expected.subtotal, actual.subtotal, 0);
+        assertEquals(expected.cgst, actual.cgst, 0);
+        assertEquals(expected.sgst, actual.sgst, 0);
+        assertEquals(expected.total, actual.total, 0);
+        assertEquals(expected.cgstRate, actual.cgstRate, 0);
+        assertEquals(expected.sgstRate, actual.sgstRate, 0);
+    }
+}
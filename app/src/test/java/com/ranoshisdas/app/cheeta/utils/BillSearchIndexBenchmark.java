@@ -0,0 +1,118 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares searching the bill history through {@link BillSearchIndex} with the linear
+ * lowercase-and-contains scan it replaced, on synthetic histories of 10k to 100k bills.
+ * Also measures building the index.
+ * <p>
+ * Not a unit test. Run it on a desktop JVM with {@link #main(String[])} from the IDE.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BillSearchIndexBenchmark {
+
+    private static final String[] FIRST_NAMES = {"Ramesh", "Suresh", "Priya", "Anita", "Rahul",
+            "Meera", "Vikram", "Kavya", "Arjun", "Divya", "Sanjay", "Pooja", "Kiran", "Neha"};
+    private static final String[] LAST_NAMES = {"Sharma", "Verma", "Iyer", "Nair", "Patel",
+            "Reddy", "Gupta", "Shah", "Das", "Rao", "Menon", "Joshi", "Singh", "Kapoor"};
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL",
+            "AUG", "SEP", "OCT", "NOV", "DEC"};
+
+    @State(Scope.Thread)
+    public static class History {
+        @Param({"10000", "50000", "100000"})
+        public int bills;
+
+        List<BillSummary> history;
+        final BillSearchIndex index = new BillSearchIndex();
+        final List<BillSummary> out = new ArrayList<>();
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            history = new ArrayList<>(bills);
+            for (int i = 0; i < bills; i++) {
+                BillSummary bill = new BillSummary();
+                bill.billId = String.format("bill%06d", bills - i);
+                bill.billNumber = MONTHS[(i / 300) % 12] + "-" + (26 - i / 3600) + "-" + (1 + i % 300);
+                bill.customerName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                bill.customerPhone = String.valueOf(7_000_000_000L + (long) (random.nextDouble() * 2_999_999_999L));
+                bill.timestamp = 1_700_000_000_000L - i * 60_000L;
+                history.add(bill);
+            }
+            index.clear();
+            index.addAll(history);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Search {
+        @Param({"ramesh sh", "98765", "jan-26-12"})
+        public String query;
+    }
+
+    @Benchmark
+    public int searchIndex(History h, Search search) {
+        h.index.search(search.query, h.out);
+        return h.out.size();
+    }
+
+    /** The filter used before the index: lowercase every field of every bill per search. */
+    @Benchmark
+    public int searchLinearScan(History h, Search search) {
+        String lower = search.query.trim().toLowerCase();
+        List<BillSummary> out = h.out;
+        out.clear();
+        for (BillSummary bill : h.history) {
+            if ((bill.billNumber != null && bill.billNumber.toLowerCase().contains(lower))
+                    || (bill.customerName != null && bill.customerName.toLowerCase().contains(lower))
+                    || (bill.customerPhone != null && bill.customerPhone.contains(lower))) {
+                out.add(bill);
+            }
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public int build(History h) {
+        BillSearchIndex built = new BillSearchIndex();
+        built.addAll(h.history);
+        return built.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BillSearchIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
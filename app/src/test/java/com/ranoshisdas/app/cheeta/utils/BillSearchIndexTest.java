@@ -0,0 +1,172 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.BillSummary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BillSearchIndexTest {
+
+    private BillSearchIndex index;
+    private final List<BillSummary> out = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        index = new BillSearchIndex();
+        // Added newest first, as the history pages arrive
+        index.add(bill("b4", "INV-2024-0004", "Priya Sharma", "9876543210", 4000));
+        index.add(bill("b3", "INV-2024-0003", "Rahul Verma", "9123456780", 3000));
+        index.add(bill("b2", "INV-2024-0002", "Anita Desai", null, 2000));
+        index.add(bill("b1", "INV-2024-0001", null, "9988776655", 1000));
+    }
+
+    @Test
+    public void search_matchesNumberNameAndPhone() {
+        assertIds("INV-2024-0003", "b3");
+        assertIds("sharma", "b4");
+        assertIds("88776", "b1");
+        assertIds("2024-000", "b4", "b3", "b2", "b1");
+    }
+
+    @Test
+    public void search_ignoresCaseAndSurroundingWhitespace() {
+        assertIds("  ANITA ", "b2");
+        assertIds("inv-2024-0002", "b2");
+        assertIds("rAhUl VeR", "b3");
+    }
+
+    @Test
+    public void search_needsWholeQueryNotJustItsTrigrams() {
+        // Every trigram of "verma sharma" occurs somewhere, but not as one substring
+        assertIds("verma sharma");
+        assertIds("0004 priya");
+    }
+
+    @Test
+    public void search_doesNotMatchAcrossFields() {
+        // The key is "number\0name\0phone"; the separator must not let a match span fields
+        assertIds("0004priya");
+        assertIds("0004 priya");
+        assertIds("desai9");
+    }
+
+    @Test
+    public void search_withUnknownTrigramFindsNothing() {
+        assertIds("xyz");
+        assertIds("INV-2024-0009");
+    }
+
+    @Test
+    public void search_withOneOrTwoCharactersScansAllBills() {
+        assertIds("a", "b4", "b3", "b2");
+        assertIds("R", "b4", "b3");
+        assertIds("55", "b1");
+        assertIds("-2", "b4", "b3", "b2", "b1");
+        assertIds("zz");
+    }
+
+    @Test
+    public void search_withBlankQueryReturnsEverything() {
+        assertIds("", "b4", "b3", "b2", "b1");
+        assertIds("   ", "b4", "b3", "b2", "b1");
+        assertIds(null, "b4", "b3", "b2", "b1");
+    }
+
+    @Test
+    public void add_replacesBillWithSameId() {
+        index.add(bill("b3", "INV-2024-0003", "Rahul Kapoor", "9123456780", 3000));
+        assertIds("verma");
+        assertIds("kapoor", "b3");
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void remove_dropsBillFromResults() {
+        index.remove("b2");
+        assertIds("anita");
+        assertIds("a", "b4", "b3");
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void search_sortsResultsAddedOutOfOrder() {
+        index.add(bill("b5", "INV-2024-0005", "Priya Nair", null, 5000));
+        index.add(bill("b0", "INV-2023-0099", "Priya Old", null, 500));
+        assertIds("priya", "b5", "b4", "b0");
+    }
+
+    @Test
+    public void search_stopsWhenCancelled() {
+        for (int i = 0; i < 2000; i++) {
+            index.add(bill("x" + i, "INV-X-" + i, "Bulk Customer", null, 0));
+        }
+        assertFalse(index.search("bulk", out, () -> true));
+        assertFalse(index.search("b", out, () -> true));
+        assertTrue(index.search("bulk", out, () -> false));
+        assertEquals(2000, out.size());
+    }
+
+    @Test
+    public void search_handlesRepeatedTrigramsAndGrowth() {
+        index.clear();
+        for (int i = 0; i < 3000; i++) {
+            index.add(bill(String.format("id%05d", 3000 - i), "N" + i, "aaaa" + i, null, 3000 - i));
+        }
+        index.search("aaaa1234", out);
+        assertEquals(1, out.size());
+        assertEquals("N1234", out.get(0).billNumber);
+        index.search("aaa", out);
+        assertEquals(3000, out.size());
+    }
+
+    @Test
+    public void searchKey_matchesLikeSearch() {
+        // BillStore searches with instr(searchKey, normalizeQuery) and must agree with search
+        BillSummary bill = bill("b9", "FEB-26-014", "Meera Iyer", "+91 98450 12345", 9000);
+        index.add(bill);
+        String key = BillSearchIndex.searchKey(bill);
+        String[] queries = {"meera", " IYER ", "eera iy", "450 12", "26-0", "f", "014meera",
+                "14 meera", "xyz", "iyer+91", "   "};
+        for (String query : queries) {
+            index.search(query, out);
+            assertEquals("Query \"" + query + "\"", out.contains(bill),
+                    key.contains(BillSearchIndex.normalizeQuery(query)));
+        }
+    }
+
+    @Test
+    public void clear_emptiesIndex() {
+        index.clear();
+        assertEquals(0, index.size());
+        assertIds("");
+        assertIds("priya");
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private void assertIds(String query, String... expected) {
+        index.search(query, out);
+        List<String> ids = new ArrayList<>();
+        for (BillSummary bill : out) {
+            ids.add(bill.billId);
+        }
+        assertEquals("Query \"" + query + "\"", List.of(expected), ids);
+    }
+
+    private static BillSummary bill(String id, String number, String name, String phone, long timestamp) {
+        BillSummary bill = new BillSummary();
+        bill.billId = id;
+        bill.billNumber = number;
+        bill.customerName = name;
+        bill.customerPhone = phone;
+        bill.timestamp = timestamp;
+        return bill;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BillTotalsTest {
+
+    @Test
+    public void compute_splitsTaxEvenly() {
+        BillTotals totals = new BillTotals().compute(10_000, 900, 900);
+        assertEquals(10_000, totals.subtotal);
+        assertEquals(900, totals.cgst);
+        assertEquals(900, totals.sgst);
+        assertEquals(11_800, totals.total);
+    }
+
+    @Test
+    public void compute_roundsEachTaxOnItsOwn() {
+        // 2.5% of 10.01 is 0.25025 for each half; the halves are not rounded as one 0.5005
+        BillTotals totals = new BillTotals().compute(1001, 250, 250);
+        assertEquals(25, totals.cgst);
+        assertEquals(25, totals.sgst);
+        assertEquals(1051, totals.total);
+    }
+
+    @Test
+    public void compute_roundsHalfPaiseAwayFromZero() {
+        BillTotals totals = new BillTotals().compute(2, 2500, 2500);
+        assertEquals(1, totals.cgst);
+        assertEquals(1, totals.sgst);
+        assertEquals(4, totals.total);
+
+        BillTotals refund = new BillTotals().compute(-2, 2500, 2500);
+        assertEquals(-1, refund.cgst);
+        assertEquals(-1, refund.sgst);
+        assertEquals(-4, refund.total);
+    }
+
+    @Test
+    public void compute_allowsDifferentRates() {
+        BillTotals totals = new BillTotals().compute(12_345, 600, 250);
+        assertEquals(741, totals.cgst);     // 740.7
+        assertEquals(309, totals.sgst);     // 308.625
+        assertEquals(13_395, totals.total);
+    }
+
+    @Test
+    public void compute_withZeroRatesAddsNoTax() {
+        BillTotals totals = new BillTotals().compute(5_000, 0, 0);
+        assertEquals(0, totals.cgst);
+        assertEquals(0, totals.sgst);
+        assertEquals(5_000, totals.total);
+    }
+
+    @Test
+    public void compute_withFloatRatesMatchesBasisPoints() {
+        BillTotals fromFloats = new BillTotals().compute(99_999, 2.5f, 9f);
+        BillTotals fromBasisPoints = new BillTotals().compute(99_999, 250, 900);
+        assertEquals(fromBasisPoints.cgst, fromFloats.cgst);
+        assertEquals(fromBasisPoints.sgst, fromFloats.sgst);
+        assertEquals(fromBasisPoints.total, fromFloats.total);
+    }
+
+    @Test
+    public void compute_overwritesPreviousResult() {
+        BillTotals totals = new BillTotals();
+        assertSame(totals, totals.compute(10_000, 900, 900));
+        totals.compute(100, 0, 0);
+        assertEquals(100, totals.subtotal);
+        assertEquals(0, totals.cgst);
+        assertEquals(0, totals.sgst);
+        assertEquals(100, totals.total);
+    }
+
+    @Test
+    public void compute_totalIsExactSumOfParts() {
+        BillTotals totals = new BillTotals();
+        for (long subtotal = 0; subtotal < 20_000; subtotal += 13) {
+            totals.compute(subtotal, 250, 250);
+            assertEquals(totals.subtotal + totals.cgst + totals.sgst, totals.total);
+        }
+    }
+}
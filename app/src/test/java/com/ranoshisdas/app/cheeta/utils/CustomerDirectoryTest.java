@@ -0,0 +1,140 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.Customer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CustomerDirectoryTest {
+
+    private final CustomerDirectory directory = CustomerDirectory.getInstance();
+
+    @Before
+    public void setUp() {
+        directory.stop();
+        remember("Ramesh", "+91 98765 43210");
+        remember("Suresh", "09876512345");
+        remember("Anita", "98700 11111");
+        remember("Office", "033 2222 3333");
+        remember("Abroad", "+44 20 7946 0958");
+        remember("Short", "0222333");
+    }
+
+    @After
+    public void tearDown() {
+        directory.stop();
+    }
+
+    @Test
+    public void normalizePhone_dropsIndianPrefixes() {
+        assertEquals("9876543210", CustomerDirectory.normalizePhone("+91 98765 43210"));
+        assertEquals("9876543210", CustomerDirectory.normalizePhone("919876543210"));
+        assertEquals("9876543210", CustomerDirectory.normalizePhone("09876543210"));
+        assertEquals("9876543210", CustomerDirectory.normalizePhone("(987) 654-3210"));
+        // A landline's trunk 0 goes too
+        assertEquals("3322223333", CustomerDirectory.normalizePhone("033 2222 3333"));
+    }
+
+    @Test
+    public void normalizePhone_keepsOtherNumbers() {
+        // Numbers that are not 10 digits once the prefix is gone
+        assertEquals("0222333", CustomerDirectory.normalizePhone("0222333"));
+        assertEquals("91234567", CustomerDirectory.normalizePhone("91234567"));
+        assertEquals("442079460958", CustomerDirectory.normalizePhone("+44 20 7946 0958"));
+    }
+
+    @Test
+    public void normalizePhone_nullWithoutDigits() {
+        assertNull(CustomerDirectory.normalizePhone(null));
+        assertNull(CustomerDirectory.normalizePhone(""));
+        assertNull(CustomerDirectory.normalizePhone("n/a"));
+    }
+
+    @Test
+    public void findByPhonePrefix_matchesStoredDigits() {
+        assertEquals(Arrays.asList("Anita", "Suresh", "Ramesh"), names(directory.findByPhonePrefix("987", 10)));
+        assertEquals(Arrays.asList("Ramesh"), names(directory.findByPhonePrefix("98765 4", 10)));
+    }
+
+    @Test
+    public void findByPhonePrefix_countryCodeTypedEitherWay() {
+        assertEquals(Arrays.asList("Ramesh"), names(directory.findByPhonePrefix("+91 98765 4", 10)));
+        assertEquals(Arrays.asList("Ramesh"), names(directory.findByPhonePrefix("91987654", 10)));
+        assertEquals(Arrays.asList("Ramesh"), names(directory.findByPhonePrefix("919876543210", 10)));
+        assertEquals(Arrays.asList("Suresh", "Ramesh"), names(directory.findByPhonePrefix("+9198765", 10)));
+    }
+
+    @Test
+    public void findByPhonePrefix_leadingZeroTypedEitherWay() {
+        assertEquals(Arrays.asList("Suresh"), names(directory.findByPhonePrefix("098765 1", 10)));
+        assertEquals(Arrays.asList("Office"), names(directory.findByPhonePrefix("033", 10)));
+        assertEquals(Arrays.asList("Office"), names(directory.findByPhonePrefix("33", 10)));
+        // Stored with its 0, since it is not a 10-digit number
+        assertEquals(Arrays.asList("Short"), names(directory.findByPhonePrefix("022", 10)));
+    }
+
+    @Test
+    public void findByPhonePrefix_everyTypedPrefixFindsTheCustomer() {
+        // Whatever normalizePhone keeps, typing the number the same way finds it as it
+        // grows, once there is a digit past a bare 0 or 91
+        for (String phone : new String[]{"+91 98765 43210", "09876512345", "033 2222 3333",
+                "+44 20 7946 0958", "0222333"}) {
+            String typed = "";
+            String digits = "";
+            for (char c : phone.toCharArray()) {
+                typed += c;
+                if (!Character.isDigit(c)) {
+                    continue;
+                }
+                digits += c;
+                if (digits.equals("0") || digits.equals("91")) {
+                    continue;
+                }
+                boolean found = false;
+                for (Customer customer : directory.findByPhonePrefix(typed, 10)) {
+                    found |= phone.equals(customer.phone);
+                }
+                assertTrue(phone + " typed as " + typed, found);
+            }
+        }
+    }
+
+    @Test
+    public void findByPhonePrefix_honoursLimitInPhoneOrder() {
+        assertEquals(Arrays.asList("Anita", "Suresh"), names(directory.findByPhonePrefix("98", 2)));
+        // Matches come from both readings of the prefix, still in phone order
+        assertEquals(Arrays.asList("Anita"), names(directory.findByPhonePrefix("0987", 1)));
+    }
+
+    @Test
+    public void findByPhonePrefix_emptyWithoutDigits() {
+        assertTrue(directory.findByPhonePrefix(null, 10).isEmpty());
+        assertTrue(directory.findByPhonePrefix("+", 10).isEmpty());
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private void remember(String name, String phone) {
+        Customer customer = new Customer();
+        customer.name = name;
+        customer.phone = phone;
+        directory.remember(customer);
+    }
+
+    private static List<String> names(List<Customer> customers) {
+        List<String> names = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            names.add(customer.name);
+        }
+        return names;
+    }
+}
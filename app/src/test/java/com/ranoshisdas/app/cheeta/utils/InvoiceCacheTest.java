@@ -0,0 +1,197 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.Bill;
+import com.ranoshisdas.app.cheeta.models.BillItem;
+import com.ranoshisdas.app.cheeta.models.Customer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class InvoiceCacheTest {
+
+    private static final String FILE = "Invoice_JAN-26-007.pdf";
+    private static final String VERSION = "pdf-3";
+
+    private Locale savedLocale;
+    private TimeZone savedTimeZone;
+
+    @Before
+    public void setUp() {
+        savedLocale = Locale.getDefault();
+        savedTimeZone = TimeZone.getDefault();
+        Locale.setDefault(new Locale("en", "IN"));
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(savedLocale);
+        TimeZone.setDefault(savedTimeZone);
+    }
+
+    @Test
+    public void key_isStableAcrossReleases() {
+        // Changing this invalidates every cached invoice on every device; only do it
+        // together with something that really changes the output
+        assertEquals("83b5b2c5d6f2b4a75b9676cbc1287eaa", key(sampleBill()));
+    }
+
+    @Test
+    public void key_sameForSameContent() {
+        assertEquals(key(sampleBill()), key(sampleBill()));
+        assertTrue(key(sampleBill()).matches("[0-9a-f]{32}"));
+    }
+
+    @Test
+    public void key_ignoresFloatingPointNoise() {
+        // Amounts read back from Firestore or recomputed may differ in the last bit
+        Bill bill = sampleBill();
+        bill.subtotal = 340.99000000000004;
+        bill.total = 358.02999999999997;
+        bill.items.get(0).price = 120.49999999999999;
+
+        assertEquals(key(sampleBill()), key(bill));
+    }
+
+    @Test
+    public void key_ignoresFieldsNotRendered() {
+        Bill bill = sampleBill();
+        bill.billSequence = 99;
+        bill.billMonth = "1999-12";
+        bill.items.get(0).subtotal = 0;     // Recomputed from price and quantity
+
+        assertEquals(key(sampleBill()), key(bill));
+    }
+
+    @Test
+    public void key_changesWithRenderedContent() {
+        String base = key(sampleBill());
+
+        Bill bill = sampleBill();
+        bill.billNumber = "JAN-26-008";
+        assertNotEquals(base, key(bill));
+
+        bill = sampleBill();
+        bill.timestamp += 60_000;
+        assertNotEquals(base, key(bill));
+
+        bill = sampleBill();
+        bill.customer.email = "asha@example.com";
+        assertNotEquals(base, key(bill));
+
+        bill = sampleBill();
+        bill.businessDetails.gstin = "22BBBBB0000B1Z5";
+        assertNotEquals(base, key(bill));
+
+        bill = sampleBill();
+        bill.items.get(1).quantity = 2;
+        assertNotEquals(base, key(bill));
+
+        bill = sampleBill();
+        bill.items.get(1).price = 100.00;
+        assertNotEquals(base, key(bill));
+
+        bill = sampleBill();
+        bill.cgstRate = 6f;
+        assertNotEquals(base, key(bill));
+
+        bill = sampleBill();
+        bill.items.remove(1);
+        assertNotEquals(base, key(bill));
+    }
+
+    @Test
+    public void key_changesWithLineOrder() {
+        Bill bill = sampleBill();
+        bill.items.add(bill.items.remove(0));
+
+        assertNotEquals(key(sampleBill()), key(bill));
+    }
+
+    @Test
+    public void key_missingPartsDifferFromBlankOnes() {
+        Bill noCustomer = sampleBill();
+        noCustomer.customer = null;
+        Bill blankCustomer = sampleBill();
+        blankCustomer.customer = new Customer();
+
+        assertNotEquals(key(noCustomer), key(blankCustomer));
+    }
+
+    @Test
+    public void key_changesWithOutputAndRenderer() {
+        String base = key(sampleBill());
+
+        assertNotEquals(base, InvoiceCache.key(sampleBill(), "Invoice_JAN-26-007.png", VERSION));
+        assertNotEquals(base, InvoiceCache.key(sampleBill(), FILE, "pdf-4"));
+    }
+
+    @Test
+    public void key_changesWithLocaleAndTimeZone() {
+        String base = key(sampleBill());
+
+        Locale.setDefault(Locale.US);
+        assertNotEquals(base, key(sampleBill()));
+
+        Locale.setDefault(new Locale("en", "IN"));
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        assertNotEquals(base, key(sampleBill()));
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static String key(Bill bill) {
+        return InvoiceCache.key(bill, FILE, VERSION);
+    }
+
+    private static Bill sampleBill() {
+        Bill bill = new Bill();
+        bill.billId = "bill-1";
+        bill.billNumber = "JAN-26-007";
+        bill.billSequence = 7;
+        bill.billMonth = "2026-01";
+        bill.timestamp = 1_700_000_000_000L;
+
+        bill.customer = new Customer();
+        bill.customer.name = "Asha";
+        bill.customer.phone = "9876543210";
+
+        bill.items = new ArrayList<>();
+        bill.items.add(line("i1", "Rice", 120.50, 2));
+        bill.items.add(line("i2", "Oil", 99.99, 1));
+
+        bill.cgstRate = 2.5f;
+        bill.sgstRate = 2.5f;
+        long subtotal = 0;
+        for (BillItem line : bill.items) {
+            subtotal += line.subtotalPaise();
+        }
+        BillTotals totals = new BillTotals().compute(subtotal, bill.cgstRate, bill.sgstRate);
+        bill.subtotal = Money.toRupees(totals.subtotal);
+        bill.cgst = Money.toRupees(totals.cgst);
+        bill.sgst = Money.toRupees(totals.sgst);
+        bill.total = Money.toRupees(totals.total);
+        bill.businessDetails = new Bill.BusinessDetails(
+                "Cheeta Stores", "MG Road", "080-1234", null, "22AAAAA0000A1Z5");
+        return bill;
+    }
+
+    private static BillItem line(String id, String name, double price, int quantity) {
+        BillItem line = new BillItem();
+        line.id = id;
+        line.name = name;
+        line.price = price;
+        line.quantity = quantity;
+        line.updateSubtotal();
+        return line;
+    }
+}
@@ -0,0 +1,130 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.Item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares item picker searches through {@link ItemSearchIndex} with a linear scan of the
+ * lowercase names and codes, on a synthetic catalog of brand + two words + size where two thirds of
+ * the items have a code. Also measures building the index.
+ * <p>
+ * Not a unit test. Run it on a desktop JVM with {@link #main(String[])} from the IDE.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemSearchIndexBenchmark {
+
+    // As many results as the Create Bill picker shows
+    private static final int LIMIT = 50;
+
+    private static final String[] BRANDS = {"Tata", "Amul", "Fortune", "Aashirvaad", "Britannia",
+            "Parle", "Haldiram", "Mother Dairy", "Saffola", "Dabur", "Everest", "MDH"};
+    private static final String[] WORDS = {"Basmati", "Rice", "Salt", "Sugar", "Atta", "Oil",
+            "Milk", "Butter", "Ghee", "Biscuits", "Masala", "Tea", "Coffee", "Dal", "Besan",
+            "Honey", "Soap", "Paneer", "Curd", "Namkeen", "Poha", "Rava", "Jaggery", "Spices"};
+    private static final String[] SIZES = {"100g", "200g", "500g", "1kg", "5kg", "500ml", "1L"};
+
+    @State(Scope.Thread)
+    public static class Catalog {
+        @Param({"5000", "10000"})
+        public int items;
+
+        List<Item> catalog;
+        String[] lowerNames;
+        ItemSearchIndex index;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            catalog = new ArrayList<>(items);
+            lowerNames = new String[items];
+            for (int i = 0; i < items; i++) {
+                Item item = new Item();
+                item.id = "item" + i;
+                item.name = BRANDS[random.nextInt(BRANDS.length)] + " "
+                        + WORDS[random.nextInt(WORDS.length)] + " "
+                        + WORDS[random.nextInt(WORDS.length)] + " "
+                        + SIZES[random.nextInt(SIZES.length)];
+                if (i % 3 != 0) {
+                    item.code = "SKU-" + (1000 + i);
+                }
+                catalog.add(item);
+                lowerNames[i] = item.name.toLowerCase();
+            }
+            index = new ItemSearchIndex(catalog);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Search {
+        @Param({"s", "m", "a", "bas", "tata ri", "sku-1000", "10050"})
+        public String query;
+    }
+
+    @Benchmark
+    public List<String> searchIndex(Catalog c, Search search) {
+        return c.index.search(search.query, LIMIT);
+    }
+
+    /**
+     * Substring scan of every name and code, then the matches sorted shortest name first,
+     * as the index ranks within a rank.
+     */
+    @Benchmark
+    public List<String> searchLinearScan(Catalog c, Search search) {
+        String lower = search.query.trim().toLowerCase();
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < c.lowerNames.length; i++) {
+            Item item = c.catalog.get(i);
+            if (c.lowerNames[i].contains(lower)
+                    || (item.code != null && item.code.toLowerCase().contains(lower))) {
+                matches.add(i);
+            }
+        }
+        matches.sort(Comparator.comparingInt(i -> c.lowerNames[i].length()));
+
+        List<String> results = new ArrayList<>(LIMIT);
+        for (int i = 0; i < matches.size() && i < LIMIT; i++) {
+            results.add(c.catalog.get(matches.get(i)).id);
+        }
+        return results;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public int build(Catalog c) {
+        return new ItemSearchIndex(c.catalog).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ItemSearchIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,131 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import com.ranoshisdas.app.cheeta.models.Item;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ItemSearchIndexTest {
+
+    private ItemSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new ItemSearchIndex(Arrays.asList(
+                item("rice", "Basmati Rice 5kg", "BR-5"),
+                item("milk", "Milk 1L", "ML-1"),
+                item("choc", "Milk Chocolate Bar", null),
+                item("soap", "Bath Soap", "SOAP"),
+                item("soapbox", "Soap Box", "SB-01"),
+                item("cheese", "Cheese Slices", "CH-12")));
+    }
+
+    @Test
+    public void search_matchesWordPrefixes() {
+        assertEquals(List.of("rice"), index.search("bas", 10));
+        assertEquals(List.of("rice"), index.search("ric", 10));
+        assertEquals(List.of("cheese", "choc"), sorted(index.search("ch", 10)));
+    }
+
+    @Test
+    public void search_ignoresCaseAndPunctuation() {
+        assertEquals(List.of("rice"), index.search("BASMATI", 10));
+        assertEquals(List.of("rice"), index.search("  basmati, rice! ", 10));
+    }
+
+    @Test
+    public void search_requiresEveryWordToMatch() {
+        assertEquals(List.of("choc"), index.search("milk choc", 10));
+        assertEquals(List.of("choc"), index.search("choc milk", 10));
+        assertEquals(List.of("rice"), index.search("5kg bas", 10));
+        assertEquals(List.of(), index.search("milk rice", 10));
+    }
+
+    @Test
+    public void search_multiWordPrefixesMatchDifferentWords() {
+        assertEquals(List.of("rice"), index.search("b r", 10));
+        assertEquals(List.of("choc"), index.search("mi ch ba", 10));
+    }
+
+    @Test
+    public void search_matchesCodesWithAndWithoutPunctuation() {
+        assertEquals(List.of("cheese"), index.search("CH-12", 10));
+        assertEquals(List.of("cheese"), index.search("ch12", 10));
+        assertEquals(List.of("soapbox"), index.search("sb01", 10));
+        assertEquals(List.of("soapbox"), index.search("sb 01", 10));
+    }
+
+    @Test
+    public void search_ranksExactCodeThenNamePrefixThenWordMatch() {
+        // "soap" is Bath Soap's exact code, Soap Box's name prefix
+        assertEquals(List.of("soap", "soapbox"), index.search("soap", 10));
+        // Both names start with "milk": the shorter name wins
+        assertEquals(List.of("milk", "choc"), index.search("milk", 10));
+        // "Cheese Slices" starts with "ch", "Milk Chocolate Bar" only has a word starting with it
+        assertEquals(List.of("cheese", "choc"), index.search("ch", 10));
+    }
+
+    @Test
+    public void search_keepsOnlyBestResultsUpToLimit() {
+        List<Item> catalog = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            catalog.add(item("long" + i, "Tea " + "x".repeat(i % 50) + " " + i, null));
+        }
+        catalog.add(item("best", "Tea", "TEA"));
+        catalog.add(item("short", "Tea 1", null));
+        ItemSearchIndex large = new ItemSearchIndex(catalog);
+
+        List<String> top = large.search("tea", 3);
+        assertEquals(3, top.size());
+        assertEquals("best", top.get(0));
+        assertEquals("short", top.get(1));
+        assertEquals(500 + 2, large.search("t", 1000).size());
+    }
+
+    @Test
+    public void search_withBlankQueryOrZeroLimitFindsNothing() {
+        assertEquals(List.of(), index.search("", 10));
+        assertEquals(List.of(), index.search("  - ", 10));
+        assertEquals(List.of(), index.search(null, 10));
+        assertEquals(List.of(), index.search("milk", 0));
+    }
+
+    @Test
+    public void search_returnsEachItemOnce() {
+        // "Soap Box" has tokens soap, box, sb, 01, sb01: "s" prefixes three of them.
+        // Its name starts with "s", so it ranks above the other two word matches.
+        assertEquals(List.of("soapbox", "soap", "cheese"), index.search("s", 10));
+    }
+
+    @Test
+    public void search_onEmptyCatalogFindsNothing() {
+        ItemSearchIndex empty = new ItemSearchIndex(Collections.emptyList());
+        assertEquals(0, empty.size());
+        assertEquals(List.of(), empty.search("milk", 10));
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static List<String> sorted(List<String> ids) {
+        List<String> copy = new ArrayList<>(ids);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static Item item(String id, String name, String code) {
+        Item item = new Item();
+        item.id = id;
+        item.name = name;
+        item.code = code;
+        return item;
+    }
+}
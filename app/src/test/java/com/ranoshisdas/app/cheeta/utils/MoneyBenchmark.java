@@ -0,0 +1,165 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old double-rupee bill arithmetic, and BigDecimal rupees as the usual exact
+ * alternative, with {@link Money} and {@link BillTotals} for a typical bill: totalling the
+ * lines, applying CGST and SGST, and formatting the amounts for display. Also compares
+ * parsing a typed-in price.
+ * <p>
+ * Not a unit test. Run it on a desktop JVM with {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final int LINES = 20;
+    private static final float CGST_RATE = 9f;
+    private static final float SGST_RATE = 9f;
+    private static final BigDecimal CGST_PERCENT = new BigDecimal("9");
+    private static final BigDecimal SGST_PERCENT = new BigDecimal("9");
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final double[] rupeePrices = new double[LINES];
+    private final BigDecimal[] decimalPrices = new BigDecimal[LINES];
+    private final long[] paisePrices = new long[LINES];
+    private final int[] quantities = new int[LINES];
+    private final String[] typedPrices = new String[LINES];
+
+    private final BillTotals totals = new BillTotals();
+    private final StringBuilder text = new StringBuilder(256);
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < LINES; i++) {
+            paisePrices[i] = 100 + random.nextInt(500_000);
+            rupeePrices[i] = Money.toRupees(paisePrices[i]);
+            decimalPrices[i] = BigDecimal.valueOf(paisePrices[i], 2);
+            quantities[i] = 1 + random.nextInt(10);
+            typedPrices[i] = Money.format(paisePrices[i]);
+        }
+    }
+
+    /* ========================= TOTALS ========================= */
+
+    @Benchmark
+    public double totalsWithDouble() {
+        double subtotal = 0;
+        for (int i = 0; i < LINES; i++) {
+            subtotal += rupeePrices[i] * quantities[i];
+        }
+        double cgst = subtotal * CGST_RATE / 100;
+        double sgst = subtotal * SGST_RATE / 100;
+        return subtotal + cgst + sgst;
+    }
+
+    @Benchmark
+    public BigDecimal totalsWithBigDecimal() {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (int i = 0; i < LINES; i++) {
+            subtotal = subtotal.add(decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i])));
+        }
+        BigDecimal cgst = subtotal.multiply(CGST_PERCENT).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+        BigDecimal sgst = subtotal.multiply(SGST_PERCENT).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+        return subtotal.add(cgst).add(sgst);
+    }
+
+    @Benchmark
+    public long totalsWithPaise() {
+        long subtotal = 0;
+        for (int i = 0; i < LINES; i++) {
+            subtotal += Money.times(paisePrices[i], quantities[i]);
+        }
+        return totals.compute(subtotal, CGST_RATE, SGST_RATE).total;
+    }
+
+    /* ========================= FORMATTING ========================= */
+
+    @Benchmark
+    public int formatWithDouble() {
+        int length = 0;
+        for (int i = 0; i < LINES; i++) {
+            length += String.format(Locale.US, "%.2f", rupeePrices[i] * quantities[i]).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int formatWithBigDecimal() {
+        int length = 0;
+        for (int i = 0; i < LINES; i++) {
+            length += decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i]))
+                    .setScale(2, RoundingMode.HALF_UP).toPlainString().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int formatWithPaise() {
+        int length = 0;
+        for (int i = 0; i < LINES; i++) {
+            text.setLength(0);
+            length += Money.appendTo(text, paisePrices[i] * quantities[i]).length();
+        }
+        return length;
+    }
+
+    /* ========================= PARSING ========================= */
+
+    @Benchmark
+    public double parseWithDouble() {
+        double sum = 0;
+        for (String price : typedPrices) {
+            sum += Double.parseDouble(price);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public BigDecimal parseWithBigDecimal() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (String price : typedPrices) {
+            sum = sum.add(new BigDecimal(price).setScale(2, RoundingMode.HALF_UP));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long parseWithPaise() {
+        long sum = 0;
+        for (String price : typedPrices) {
+            sum += Money.parse(price);
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
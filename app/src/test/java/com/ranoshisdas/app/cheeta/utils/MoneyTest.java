@@ -0,0 +1,149 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoneyTest {
+
+    @Test
+    public void ofRupees_roundsToNearestPaisa() {
+        assertEquals(1234, Money.ofRupees(12.34));
+        assertEquals(-1234, Money.ofRupees(-12.34));
+        assertEquals(0, Money.ofRupees(0.0));
+        assertEquals(100, Money.ofRupees(0.999));
+    }
+
+    @Test
+    public void ofRupees_roundsHalvesAwayFromZero() {
+        // 0.125 and 0.375 are exact in binary, so these are true halves
+        assertEquals(13, Money.ofRupees(0.125));
+        assertEquals(-13, Money.ofRupees(-0.125));
+        assertEquals(38, Money.ofRupees(0.375));
+        assertEquals(-38, Money.ofRupees(-0.375));
+    }
+
+    @Test
+    public void toRupees_convertsBackToSamePaise() {
+        for (long paise = -100_000; paise <= 100_000; paise++) {
+            assertEquals(paise, Money.ofRupees(Money.toRupees(paise)));
+        }
+    }
+
+    @Test
+    public void times_isExact() {
+        assertEquals(3750, Money.times(1250, 3));
+        assertEquals(0, Money.times(1250, 0));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void times_throwsOnOverflow() {
+        Money.times(Long.MAX_VALUE / 2, 3);
+    }
+
+    @Test
+    public void basisPoints_roundsFloatRates() {
+        assertEquals(900, Money.basisPoints(9f));
+        assertEquals(250, Money.basisPoints(2.5f));
+        assertEquals(10, Money.basisPoints(0.1f));
+        assertEquals(0, Money.basisPoints(0f));
+    }
+
+    @Test
+    public void percentOf_appliesRate() {
+        assertEquals(900, Money.percentOf(10_000, 900));
+        assertEquals(8, Money.percentOf(333, 250));         // 8.325
+        assertEquals(0, Money.percentOf(10_000, 0));
+        assertEquals(0, Money.percentOf(0, 900));
+    }
+
+    @Test
+    public void percentOf_roundsHalvesAwayFromZero() {
+        assertEquals(1, Money.percentOf(1, 5000));          // 0.5
+        assertEquals(-1, Money.percentOf(-1, 5000));
+        assertEquals(31, Money.percentOf(1234, 250));       // 30.85
+        assertEquals(-31, Money.percentOf(-1234, 250));
+        assertEquals(30, Money.percentOf(1218, 250));       // 30.45
+        assertEquals(-30, Money.percentOf(-1218, 250));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void percentOf_throwsOnOverflow() {
+        Money.percentOf(Long.MAX_VALUE / 100, 10_000);
+    }
+
+    @Test
+    public void parse_readsPlainAmounts() {
+        assertEquals(12_000, Money.parse("120"));
+        assertEquals(9950, Money.parse("99.5"));
+        assertEquals(125_000, Money.parse("1,250.00"));
+        assertEquals(700, Money.parse("  7 "));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(500, Money.parse("5."));
+        assertEquals(300, Money.parse("+3"));
+        assertEquals(-325, Money.parse("-3.25"));
+        assertEquals(0, Money.parse("0"));
+        assertEquals(0, Money.parse("-0"));
+    }
+
+    @Test
+    public void parse_roundsExtraDecimalsHalfAwayFromZero() {
+        assertEquals(99, Money.parse("0.994"));
+        assertEquals(100, Money.parse("0.995"));
+        assertEquals(123, Money.parse("1.2345"));
+        assertEquals(124, Money.parse("1.2351"));
+        assertEquals(1, Money.parse("0.005"));
+        assertEquals(-1, Money.parse("-0.005"));
+        assertEquals(-100, Money.parse("-0.995"));
+    }
+
+    @Test
+    public void parse_rejectsAnythingButADecimalNumber() {
+        String[] invalid = {"", "   ", ".", "-", "+", "abc", "1.2.3", "1e5", "--1", "+-1",
+                "12a", "₹10", "1 000", "0x10", "NaN", "Infinity"};
+        for (String text : invalid) {
+            try {
+                Money.parse(text);
+                fail("Parsed \"" + text + "\"");
+            } catch (NumberFormatException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsAmountsTooLargeForPaise() {
+        Money.parse("99999999999999999999");
+    }
+
+    @Test
+    public void parse_acceptsLargestRupeeAmount() {
+        long maxRupees = Long.MAX_VALUE / 100;
+        assertEquals(maxRupees * 100, Money.parse(String.valueOf(maxRupees)));
+    }
+
+    @Test
+    public void format_alwaysShowsTwoDecimals() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("0.50", Money.format(50));
+        assertEquals("1250.50", Money.format(125_050));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("-12.34", Money.format(-1234));
+        assertEquals("12.50", Money.formatRupees(12.5));
+    }
+
+    @Test
+    public void appendTo_reusesBuilder() {
+        StringBuilder out = new StringBuilder("Total: ");
+        assertSame(out, Money.appendTo(out, 99));
+        assertEquals("Total: 0.99", out.toString());
+    }
+
+    @Test
+    public void parseAndFormat_roundTrip() {
+        for (long paise = -10_000; paise <= 10_000; paise += 7) {
+            assertEquals(paise, Money.parse(Money.format(paise)));
+        }
+    }
+}
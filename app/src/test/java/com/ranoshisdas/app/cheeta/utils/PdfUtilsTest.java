@@ -0,0 +1,104 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PdfUtilsTest {
+
+    // Block heights as InvoiceLayout builds them, with a three-line customer address
+    private static final int HEADER = 258;
+    private static final int CONTINUATION = 80;
+    private static final int TABLE_HEADER = 23;
+    private static final int ROW = 18;
+    private static final int TABLE_END = 5;
+    private static final int SUMMARY = 154;
+
+    @Test
+    public void noLines_onePage() {
+        assertEquals(Collections.singletonList(0), plan(0));
+    }
+
+    @Test
+    public void shortBill_totalsOnFirstPage() {
+        assertEquals(Collections.singletonList(20), plan(20));
+    }
+
+    @Test
+    public void fullFirstPage_totalsOnOwnPage() {
+        assertEquals(Arrays.asList(28, 0), plan(28));
+    }
+
+    @Test
+    public void oneLineOver_flowsToSecondPage() {
+        assertEquals(Arrays.asList(28, 1), plan(29));
+    }
+
+    @Test
+    public void fullSecondPage_totalsOnOwnPage() {
+        assertEquals(Arrays.asList(28, 37, 0), plan(65));
+    }
+
+    @Test
+    public void longBill_continuationPagesHoldMoreRows() {
+        assertEquals(Arrays.asList(28, 38, 38, 38, 38, 20), plan(200));
+    }
+
+    @Test
+    public void veryLongBill_everyRowPlacedOnce() {
+        List<Integer> pages = plan(1000);
+
+        assertEquals(27, pages.size());
+        assertEquals(Integer.valueOf(28), pages.get(0));
+        int total = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            total += pages.get(i);
+            if (i > 0 && i < pages.size() - 1) {
+                assertEquals("Page " + (i + 1), Integer.valueOf(38), pages.get(i));
+            }
+        }
+        assertEquals(1000, total);
+    }
+
+    @Test
+    public void everyPageFits() {
+        for (int lines = 0; lines <= 300; lines++) {
+            List<Integer> pages = plan(lines);
+            for (int i = 0; i < pages.size(); i++) {
+                int rows = pages.get(i);
+                int used = (i == 0 ? HEADER : CONTINUATION) + TABLE_HEADER + rows * ROW + TABLE_END;
+                if (i == pages.size() - 1) {
+                    used += SUMMARY;
+                }
+                assertTrue(lines + " lines, page " + (i + 1), used <= 842 - 35);
+            }
+        }
+    }
+
+    @Test
+    public void tallRow_movesToNextPage() {
+        // A wrapped description makes its row taller than the others
+        int[] rows = new int[28];
+        Arrays.fill(rows, ROW);
+        rows[27] = 3 * ROW;
+
+        List<Integer> pages = PdfUtils.planPages(HEADER, CONTINUATION, TABLE_HEADER, rows,
+                TABLE_END, SUMMARY);
+
+        assertEquals(Arrays.asList(27, 1), pages);
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static List<Integer> plan(int lines) {
+        int[] rows = new int[lines];
+        Arrays.fill(rows, ROW);
+        return PdfUtils.planPages(HEADER, CONTINUATION, TABLE_HEADER, rows, TABLE_END, SUMMARY);
+    }
+}
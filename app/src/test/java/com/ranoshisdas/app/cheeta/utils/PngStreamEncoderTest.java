@@ -0,0 +1,123 @@
+package com.ranoshisdas.app.cheeta.utils;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class PngStreamEncoderTest {
+
+    @Test
+    public void decodesToSamePixels() throws IOException {
+        int width = 37;
+        int height = 11;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Gradients cross every byte boundary, so the Sub filter wraps around
+                pixels[y * width + x] = 0xFF000000 | (x * 7 << 16) | (y * 23 << 8) | ((x * y * 13) & 0xFF);
+            }
+        }
+
+        assertPixels(width, height, pixels, encode(width, height, pixels));
+    }
+
+    @Test
+    public void ignoresAlpha() throws IOException {
+        int[] pixels = {0x00FFFFFF, 0x80123456, 0xFF000000};
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encode(3, 1, pixels)));
+
+        assertEquals(0xFFFFFF, image.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0x123456, image.getRGB(1, 0) & 0xFFFFFF);
+        assertEquals(0x000000, image.getRGB(2, 0) & 0xFFFFFF);
+        assertFalse(image.getColorModel().hasAlpha());
+    }
+
+    @Test
+    public void largeImage_spansSeveralChunks() throws IOException {
+        // Noise barely compresses, so the data runs well past one 64 KiB IDAT chunk
+        int width = 300;
+        int height = 400;
+        int[] pixels = new int[width * height];
+        Random random = new Random(42);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+
+        byte[] png = encode(width, height, pixels);
+
+        assertTrue(png.length > 2 * 64 * 1024);
+        assertPixels(width, height, pixels, png);
+    }
+
+    @Test
+    public void rowsReadFromOffset() throws IOException {
+        // Rows handed over from a strip buffer, as the invoice renderer does
+        int width = 4;
+        int[] strip = {
+                0xFF111111, 0xFF222222, 0xFF333333, 0xFF444444,
+                0xFF555555, 0xFF666666, 0xFF777777, 0xFF888888,
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PngStreamEncoder encoder = new PngStreamEncoder(out, width, 2)) {
+            encoder.writeRow(strip, width);
+            encoder.writeRow(strip, 0);
+            encoder.finish();
+        }
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(0x555555, image.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0x111111, image.getRGB(0, 1) & 0xFFFFFF);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void finish_throwsOnMissingRows() throws IOException {
+        PngStreamEncoder encoder = new PngStreamEncoder(new ByteArrayOutputStream(), 2, 2);
+        encoder.writeRow(new int[2], 0);
+        encoder.finish();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeRow_throwsPastLastRow() throws IOException {
+        PngStreamEncoder encoder = new PngStreamEncoder(new ByteArrayOutputStream(), 2, 1);
+        encoder.writeRow(new int[2], 0);
+        encoder.writeRow(new int[2], 0);
+    }
+
+    /* =========================
+       HELPERS
+       ========================= */
+
+    private static byte[] encode(int width, int height, int[] pixels) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PngStreamEncoder encoder = new PngStreamEncoder(out, width, height)) {
+            for (int y = 0; y < height; y++) {
+                encoder.writeRow(pixels, y * width);
+            }
+            encoder.finish();
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertPixels(int width, int height, int[] expected, byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull("Not a readable PNG", image);
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals("Pixel " + x + "," + y,
+                        expected[y * width + x] & 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+    }
+}